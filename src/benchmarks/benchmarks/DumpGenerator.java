@@ -0,0 +1,107 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.github.defective4.dsp.vcd4j.data.BinaryChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.State;
+import io.github.defective4.dsp.vcd4j.data.TimeScale;
+import io.github.defective4.dsp.vcd4j.data.TimeScale.TimeScaleUnit;
+import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.file.VCDWriter;
+
+/**
+ * Generates synthetic dumps used by the benchmarks.<br>
+ * Dumps are shaped by the number of signals, their vector width and toggle
+ * density, and are fully determined by the seed, so every run of a benchmark
+ * works on the same data.
+ */
+public final class DumpGenerator {
+    /**
+     * Number of timestamps in generated dumps
+     */
+    public static final int TIMESTAMPS = 10_000;
+
+    private static final State[] STATES = State.values();
+
+    private DumpGenerator() {}
+
+    /**
+     * Generates a dump.<br>
+     * Every signal has a value at the first timestamp. At each following
+     * timestamp, each signal changes with the probability given by the density.
+     *
+     * @param  signals    number of signals
+     * @param  width      bit count of every signal. 1-bit signals get scalar
+     *                    changes, wider signals get multi-bit changes
+     * @param  density    probability of a signal changing at a timestamp
+     * @param  timestamps number of timestamps
+     * @param  seed       seed of the random generator
+     * @return            generated dump
+     */
+    public static VCD generate(int signals, int width, double density, int timestamps, long seed) {
+        Random random = new Random(seed);
+        VariableDefinition[] variables = new VariableDefinition[signals];
+        Map<String, VariableDefinition> definitions = new LinkedHashMap<>();
+        for (int i = 0; i < signals; i++) {
+            variables[i] = new VariableDefinition(identifier(i), VariableDefinition.VarType.WIRE, width, "signal" + i);
+            definitions.put(variables[i].getIdentifier(), variables[i]);
+        }
+
+        Map<Long, List<ChangeEntry<?>>> changes = new LinkedHashMap<>();
+        long time = 0;
+        for (int t = 0; t < timestamps; t++) {
+            List<ChangeEntry<?>> entries = new ArrayList<>();
+            for (VariableDefinition variable : variables) {
+                if (t > 0 && random.nextDouble() >= density) continue;
+                if (width == 1) entries.add(new BinaryChangeEntry(variable, STATES[random.nextInt(STATES.length)]));
+                else entries.add(new MultibitChangeEntry(variable, randomValue(random, width)));
+            }
+            changes.put(time, entries);
+            time += 1 + random.nextInt(10);
+        }
+        return new VCD(new TimeScale(TimeScaleUnit.NANOSECOND, 1), changes, definitions);
+    }
+
+    /**
+     * Generates a random value fitting in a signal
+     *
+     * @param  random the random generator
+     * @param  width  bit count of the signal
+     * @return        a non-negative value
+     */
+    public static int randomValue(Random random, int width) {
+        return width >= 31 ? random.nextInt() & Integer.MAX_VALUE : random.nextInt(1 << width);
+    }
+
+    /**
+     * Writes a dump to a temporary file, which is deleted when the JVM exits
+     *
+     * @param  vcd         the dump
+     * @return            the written file
+     * @throws IOException if an I/O error occurs
+     */
+    public static File writeTemporary(VCD vcd) throws IOException {
+        File file = File.createTempFile("vcd4j-benchmark", ".vcd");
+        file.deleteOnExit();
+        VCDWriter.write(vcd, file);
+        return file;
+    }
+
+    private static String identifier(int index) {
+        StringBuilder builder = new StringBuilder();
+        do {
+            builder.append((char) ('!' + index % 94));
+            index /= 94;
+        } while (index > 0);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.file.ParserOptions;
+import io.github.defective4.dsp.vcd4j.file.VCDParser;
+
+/**
+ * Measures parsing of a dump file, each operation parsing the whole file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VCDParserBenchmark {
+    private static final ParserOptions MAPPED = new ParserOptions.Builder()
+            .setMemoryMapped(true)
+            .setColumnar(true)
+            .build();
+
+    @Param({ "0.05", "0.5" })
+    public double density;
+
+    @Param({ "16", "256" })
+    public int signals;
+
+    @Param({ "1", "16" })
+    public int width;
+
+    private File file;
+
+    @TearDown
+    public void delete() {
+        file.delete();
+    }
+
+    @Benchmark
+    public VCD parse() throws IOException {
+        return VCDParser.parse(file);
+    }
+
+    @Benchmark
+    public VCD parseMappedColumnar() throws IOException {
+        return VCDParser.parse(file, MAPPED);
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        file = DumpGenerator.writeTemporary(
+                DumpGenerator.generate(signals, width, density, DumpGenerator.TIMESTAMPS, signals));
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
+import io.github.defective4.dsp.vcd4j.player.DispatchOptions;
+import io.github.defective4.dsp.vcd4j.player.PlayerAdapter;
+import io.github.defective4.dsp.vcd4j.player.PlayerListener;
+import io.github.defective4.dsp.vcd4j.player.VCDPlayer;
+import io.github.defective4.dsp.vcd4j.player.VCDPlayer.PlaybackMode;
+
+/**
+ * Measures dispatching a dump to a listener.<br>
+ * Each operation plays the whole dump as fast as possible, and ends when the
+ * listener is notified that the playback stopped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VCDPlayerBenchmark {
+    @Param({ "false", "true" })
+    public boolean async;
+
+    @Param({ "1", "64" })
+    public int batchSize;
+
+    @Param({ "0.05", "0.5" })
+    public double density;
+
+    @Param({ "16", "256" })
+    public int signals;
+
+    private PlayerListener listener;
+    private VCDPlayer player;
+    private volatile CountDownLatch stopped;
+
+    @Benchmark
+    public void play() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        stopped = latch;
+        player.start();
+        latch.await();
+    }
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        player = new VCDPlayer(DumpGenerator.generate(signals, 1, density, DumpGenerator.TIMESTAMPS, signals));
+        player.setPlaybackMode(PlaybackMode.AS_FAST_AS_POSSIBLE);
+        player.setBatchSize(batchSize);
+        listener = new PlayerAdapter() {
+            @Override
+            public void playerStopped(long playerTime, long realTimeNanos) {
+                stopped.countDown();
+            }
+
+            @Override
+            public void valuesChanged(List<ChangeEntry<?>> entries, long playerTime, long realTimeNanos) {
+                blackhole.consume(entries);
+            }
+        };
+        player.addListener(listener, async ? new DispatchOptions.Builder().build() : DispatchOptions.INLINE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        player.stop();
+        player.removeListener(listener);
+    }
+}
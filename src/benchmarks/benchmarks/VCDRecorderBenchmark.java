@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.defective4.dsp.vcd4j.data.TimeScale;
+import io.github.defective4.dsp.vcd4j.data.TimeScale.TimeScaleUnit;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.recorder.VCDRecorder;
+
+/**
+ * Measures inserting changes into a started recorder.<br>
+ * Each operation is a single change. The recording is restarted every
+ * {@value #RECORDING_LENGTH} changes, so the heap doesn't fill up during long
+ * iterations.<br>
+ * Every benchmark thread has its own recorder, so this measures the cost of a
+ * single producer, even for a concurrent recorder. Contention between producers
+ * sharing a recorder is measured by {@link VCDRecorderContentionBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(VCDRecorderBenchmark.BATCH)
+public class VCDRecorderBenchmark {
+    static final int BATCH = 1024;
+
+    private static final int RECORDING_LENGTH = 1 << 20;
+    private static final io.github.defective4.dsp.vcd4j.data.State[] STATES =
+            io.github.defective4.dsp.vcd4j.data.State.values();
+
+    @Param({ "false", "true" })
+    public boolean concurrent;
+
+    @Param({ "16", "256" })
+    public int signals;
+
+    @Param({ "1", "16" })
+    public int width;
+
+    private int[] handles;
+    private int recorded;
+    private VCDRecorder recorder;
+    private int[] values;
+    private VariableDefinition[] variables;
+
+    @Benchmark
+    public void insertByDefinition() {
+        for (int i = 0; i < BATCH; i++) {
+            VariableDefinition variable = variables[i % variables.length];
+            if (width == 1) recorder.insertBinaryChange(variable, STATES[values[i]]);
+            else recorder.insertMultibitChange(variable, values[i]);
+        }
+        restartIfFull();
+    }
+
+    @Benchmark
+    public void insertByHandle() {
+        for (int i = 0; i < BATCH; i++) {
+            int handle = handles[i % handles.length];
+            if (width == 1) recorder.insertBinaryChange(handle, STATES[values[i]]);
+            else recorder.insertMultibitChange(handle, values[i]);
+        }
+        restartIfFull();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        recorder = new VCDRecorder.Builder(new TimeScale(TimeScaleUnit.NANOSECOND, 1)).setConcurrent(concurrent)
+                .build();
+        Random random = new Random(signals);
+        variables = new VariableDefinition[signals];
+        handles = new int[signals];
+        for (int i = 0; i < signals; i++) {
+            variables[i] = new VariableDefinition(Integer.toString(i), VariableDefinition.VarType.WIRE, width,
+                    "signal" + i);
+            handles[i] = recorder.registerVariable(variables[i]);
+        }
+        values = new int[BATCH];
+        for (int i = 0; i < BATCH; i++)
+            values[i] = width == 1 ? random.nextInt(STATES.length) : DumpGenerator.randomValue(random, width);
+        recorded = 0;
+        recorder.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        recorder.stop();
+    }
+
+    private void restartIfFull() {
+        recorded += BATCH;
+        if (recorded < RECORDING_LENGTH) return;
+        recorder.stop();
+        recorder.start();
+        recorded = 0;
+    }
+}
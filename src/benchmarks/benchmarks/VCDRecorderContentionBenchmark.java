@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.defective4.dsp.vcd4j.data.TimeScale;
+import io.github.defective4.dsp.vcd4j.data.TimeScale.TimeScaleUnit;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.recorder.VCDRecorder;
+
+/**
+ * Measures multiple producer threads inserting changes into a single shared
+ * recorder.<br>
+ * Unlike {@link VCDRecorderBenchmark}, where every thread has its own
+ * recorder, all threads record to the same one, so the reported throughput is
+ * the total of all producers and includes their contention. A concurrent
+ * recorder is compared with an ordinary one whose calls are synchronized on the
+ * recorder.<br>
+ * The benchmark runs with 4 threads by default. Other thread counts are
+ * measured with the <code>-t</code> option, for example
+ * <code>-t 16 VCDRecorderContentionBenchmark</code>. Changes exceeding the
+ * memory budget of {@value #MEMORY_BUDGET} bytes are spilled, so the heap
+ * doesn't fill up on fast machines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(4)
+@OperationsPerInvocation(VCDRecorderContentionBenchmark.BATCH)
+public class VCDRecorderContentionBenchmark {
+    /**
+     * Values inserted by a single producer thread
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        private int[] values;
+
+        @Setup
+        public void setup(VCDRecorderContentionBenchmark benchmark) {
+            Random random = new Random(Thread.currentThread().getId());
+            values = new int[BATCH];
+            for (int i = 0; i < BATCH; i++) values[i] = random.nextInt(1 << benchmark.width);
+        }
+    }
+
+    static final int BATCH = 1024;
+
+    private static final long MEMORY_BUDGET = 512L << 20;
+
+    @Param({ "false", "true" })
+    public boolean concurrent;
+
+    @Param({ "256" })
+    public int signals;
+
+    @Param({ "16" })
+    public int width;
+
+    private int[] handles;
+    private VCDRecorder recorder;
+
+    @Benchmark
+    public void insertByHandle(Producer producer) {
+        int[] values = producer.values;
+        if (concurrent) for (int i = 0; i < BATCH; i++)
+            recorder.insertMultibitChange(handles[i % handles.length], values[i]);
+        else for (int i = 0; i < BATCH; i++) synchronized (recorder) {
+            recorder.insertMultibitChange(handles[i % handles.length], values[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        recorder = new VCDRecorder.Builder(new TimeScale(TimeScaleUnit.NANOSECOND, 1)).setConcurrent(concurrent)
+                .setMemoryBudget(MEMORY_BUDGET).build();
+        handles = new int[signals];
+        for (int i = 0; i < signals; i++) handles[i] = recorder.registerVariable(
+                new VariableDefinition(Integer.toString(i), VariableDefinition.VarType.WIRE, width, "signal" + i));
+        recorder.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        recorder.close();
+    }
+}
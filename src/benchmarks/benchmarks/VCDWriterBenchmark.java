@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.data.ValueChangeColumns;
+import io.github.defective4.dsp.vcd4j.file.VCDWriter;
+
+/**
+ * Measures writing a dump, each operation writing the whole dump to a stream
+ * discarding its output
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VCDWriterBenchmark {
+    @Param({ "false", "true" })
+    public boolean columnar;
+
+    @Param({ "0.05", "0.5" })
+    public double density;
+
+    @Param({ "16", "256" })
+    public int signals;
+
+    @Param({ "1", "16" })
+    public int width;
+
+    private VCD vcd;
+
+    @Setup
+    public void setup() {
+        vcd = DumpGenerator.generate(signals, width, density, DumpGenerator.TIMESTAMPS, signals);
+        if (columnar) vcd = new VCD(vcd.getDate(), vcd.getVersion(), vcd.getComment(), vcd.getScope(),
+                vcd.getTimeScale(), ValueChangeColumns.of(vcd.getValueChanges(), vcd.getVariableDefinitions()));
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        VCDWriter.write(vcd, OutputStream.nullOutputStream());
+    }
+}
@@ -11,6 +11,7 @@ import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
 import io.github.defective4.dsp.vcd4j.data.TimeScale;
 import io.github.defective4.dsp.vcd4j.data.VCD;
 import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.data.VectorChangeEntry;
 import io.github.defective4.dsp.vcd4j.file.VCDParser;
 
 public class VCDParserExample {
@@ -56,6 +57,8 @@ public class VCDParserExample {
                         } else {
                             value = "0x" + Integer.toHexString(multibit.getValue());
                         }
+                    } else if (change instanceof VectorChangeEntry vector) {
+                        value = "b" + vector.getValue();
                     } else throw new IllegalStateException("Unknown change entry class: " + change.getClass());
                     System.out
                             .println(String
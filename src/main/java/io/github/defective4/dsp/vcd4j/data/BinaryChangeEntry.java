@@ -1,5 +1,7 @@
 package io.github.defective4.dsp.vcd4j.data;
 
+import java.util.Objects;
+
 /**
  * Represents a one-bit binary change entry in a VCD file.
  *
@@ -7,6 +9,7 @@ package io.github.defective4.dsp.vcd4j.data;
  * changes.
  */
 public final class BinaryChangeEntry extends ChangeEntry<State> {
+    private static final int STATE_COUNT = State.values().length;
 
     /**
      * Constructs a new binary change entry
@@ -26,4 +29,32 @@ public final class BinaryChangeEntry extends ChangeEntry<State> {
     public boolean isUndefined() {
         return getValue() == State.UNDEFINED;
     }
+
+    /**
+     * Returns a shared binary change entry.<br>
+     * Entries are immutable, so there is only one entry per variable and state
+     * - it's created on first use and cached in the variable definition. Use
+     * this method instead of the constructor when creating many changes, such
+     * as toggles of a clock signal.<br>
+     * This method is thread-safe, although concurrent first calls may create
+     * more than one instance.
+     *
+     * @param  variable                 associated variable
+     * @param  value                    associated non-null value
+     * @return                          the shared entry
+     * @throws IllegalArgumentException if variable's bit count is more than 1
+     */
+    public static BinaryChangeEntry of(VariableDefinition variable, State value) {
+        Objects.requireNonNull(variable);
+        Objects.requireNonNull(value);
+        BinaryChangeEntry[] entries = variable.binaryEntries;
+        if (entries == null) {
+            if (variable.getBitCount() != 1)
+                throw new IllegalArgumentException("Only 1-bit variables are allowed in binary change entry");
+            entries = variable.binaryEntries = new BinaryChangeEntry[STATE_COUNT];
+        }
+        BinaryChangeEntry entry = entries[value.ordinal()];
+        if (entry == null) entry = entries[value.ordinal()] = new BinaryChangeEntry(variable, value);
+        return entry;
+    }
 }
@@ -0,0 +1,310 @@
+package io.github.defective4.dsp.vcd4j.data;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable vector of four-state bits of arbitrary width.
+ * <p>
+ * Bits are packed into two planes of <code>long</code> words, least
+ * significant bit first - a value plane and an unknown plane. Each bit is
+ * encoded by a pair of plane bits, the same way Verilog's VPI encodes
+ * <code>aval</code>/<code>bval</code> pairs:
+ * </p>
+ * <table>
+ * <caption>Encoding of bit states</caption>
+ * <tr>
+ * <th>Value</th>
+ * <th>Unknown</th>
+ * <th>State</th>
+ * </tr>
+ * <tr>
+ * <td>0</td>
+ * <td>0</td>
+ * <td>{@link State#LOW}</td>
+ * </tr>
+ * <tr>
+ * <td>1</td>
+ * <td>0</td>
+ * <td>{@link State#HIGH}</td>
+ * </tr>
+ * <tr>
+ * <td>0</td>
+ * <td>1</td>
+ * <td>{@link State#FLOATING}</td>
+ * </tr>
+ * <tr>
+ * <td>1</td>
+ * <td>1</td>
+ * <td>{@link State#UNDEFINED}</td>
+ * </tr>
+ * </table>
+ * Bits of the last word above the vector's width are always 0.
+ */
+public final class BitVector {
+    private final long[] unknowns;
+    private final long[] values;
+    private final int width;
+
+    /**
+     * Constructs a new vector from its planes.<br>
+     * The arrays are copied.
+     *
+     * @param  width                    number of bits
+     * @param  values                   value plane, {@link #getWordCount(int)}
+     *                                  words long
+     * @param  unknowns                 unknown plane, {@link #getWordCount(int)}
+     *                                  words long
+     * @throws IllegalArgumentException if width is less than 1, a plane has
+     *                                  invalid length, or it has bits set above
+     *                                  the width
+     */
+    public BitVector(int width, long[] values, long[] unknowns) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(unknowns);
+        if (width < 1) throw new IllegalArgumentException("width < 1");
+        int words = getWordCount(width);
+        if (values.length != words || unknowns.length != words)
+            throw new IllegalArgumentException("Planes of a " + width + "-bit vector must be " + words + " words long");
+        long mask = topMask(width);
+        if ((values[words - 1] & ~mask) != 0 || (unknowns[words - 1] & ~mask) != 0)
+            throw new IllegalArgumentException("Vector has bits set above its width");
+        this.width = width;
+        this.values = values.clone();
+        this.unknowns = unknowns.clone();
+    }
+
+    private BitVector(long[] values, long[] unknowns, int width) {
+        this.values = values;
+        this.unknowns = unknowns;
+        this.width = width;
+    }
+
+    /**
+     * Appends bits of this vector, most significant bit first, to a string
+     * builder
+     *
+     * @param  builder the builder
+     * @return         the builder
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        for (int i = width - 1; i >= 0; i--) builder.append(getBit(i).getChar());
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof BitVector other)) return false;
+        return width == other.width && Arrays.equals(values, other.values) && Arrays.equals(unknowns, other.unknowns);
+    }
+
+    /**
+     * @param  index                     index of the bit, 0 being the least
+     *                                   significant one
+     * @return                           state of the bit
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public State getBit(int index) {
+        Objects.checkIndex(index, width);
+        int value = (int) (values[index >>> 6] >>> index) & 1;
+        int unknown = (int) (unknowns[index >>> 6] >>> index) & 1;
+        if (unknown == 0) return value == 0 ? State.LOW : State.HIGH;
+        return value == 0 ? State.FLOATING : State.UNDEFINED;
+    }
+
+    /**
+     * @param  index index of the word
+     * @return       word of the unknown plane
+     */
+    public long getUnknownWord(int index) {
+        return unknowns[index];
+    }
+
+    /**
+     * @param  index index of the word
+     * @return       word of the value plane
+     */
+    public long getValueWord(int index) {
+        return values[index];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return number of words in each plane
+     */
+    public int getWordCount() {
+        return values.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * width + Arrays.hashCode(values)) + Arrays.hashCode(unknowns);
+    }
+
+    /**
+     * @return <code>true</code> if the vector has no x or z bits
+     */
+    public boolean isKnown() {
+        for (long word : unknowns) if (word != 0) return false;
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if all bits of the vector are x
+     */
+    public boolean isUndefined() {
+        long mask = topMask(width);
+        for (int i = 0; i < values.length; i++) {
+            long expected = i == values.length - 1 ? mask : -1L;
+            if (values[i] != expected || unknowns[i] != expected) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return                       the lowest 64 bits of the vector as an
+     *                               unsigned number
+     * @throws IllegalStateException if the vector has x or z bits
+     */
+    public long toLong() {
+        if (!isKnown()) throw new IllegalStateException("Vector has unknown bits");
+        return values[0];
+    }
+
+    /**
+     * @return bits of the vector, most significant bit first
+     */
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(width)).toString();
+    }
+
+    /**
+     * @param  width number of bits
+     * @return       number of words needed to store a plane of the given width
+     */
+    public static int getWordCount(int width) {
+        return width + 63 >>> 6;
+    }
+
+    /**
+     * Creates a vector of known bits
+     *
+     * @param  width                    number of bits
+     * @param  value                    the value, treated as an unsigned
+     *                                  number
+     * @return                          a new vector
+     * @throws IllegalArgumentException if width is less than 1 or the value
+     *                                  doesn't fit in it
+     */
+    public static BitVector of(int width, long value) {
+        if (width < 1) throw new IllegalArgumentException("width < 1");
+        if (width < 64 && value >>> width != 0)
+            throw new IllegalArgumentException("Value " + value + " doesn't fit in " + width + " bits");
+        long[] values = new long[getWordCount(width)];
+        values[0] = value;
+        return new BitVector(values, new long[values.length], width);
+    }
+
+    /**
+     * Parses bits of a vector as they appear in VCD files, most significant bit
+     * first.<br>
+     * Digits are case-insensitive. If there are less digits than the width, the
+     * vector is extended on the left with zeros, or with the leftmost digit if
+     * it's x or z.
+     *
+     * @param  bits                     characters to parse
+     * @param  from                     index of the first digit
+     * @param  to                       index after the last digit
+     * @param  width                    number of bits of the vector
+     * @return                          a new vector
+     * @throws IllegalArgumentException if width is less than 1, there are no
+     *                                  digits, more digits than the width, or
+     *                                  any of them is invalid
+     */
+    public static BitVector parse(CharSequence bits, int from, int to, int width) {
+        Objects.requireNonNull(bits);
+        Objects.checkFromToIndex(from, to, bits.length());
+        if (width < 1) throw new IllegalArgumentException("width < 1");
+        int length = to - from;
+        if (length == 0) throw new IllegalArgumentException("Vector has no bits");
+        if (length > width) throw new IllegalArgumentException(
+                String.format("Vector \"%s\" is wider than %s bits", bits.subSequence(from, to), width));
+        long[] values = new long[getWordCount(width)];
+        long[] unknowns = new long[values.length];
+        for (int i = 0; i < length; i++) {
+            int bit = length - 1 - i;
+            long mask = 1L << bit;
+            switch (bits.charAt(from + i)) {
+                case '0' -> {}
+                case '1' -> values[bit >>> 6] |= mask;
+                case 'x', 'X' -> {
+                    values[bit >>> 6] |= mask;
+                    unknowns[bit >>> 6] |= mask;
+                }
+                case 'z', 'Z' -> unknowns[bit >>> 6] |= mask;
+                default -> throw new IllegalArgumentException(
+                        String.format("Invalid bit \"%s\" in vector \"%s\"", bits.charAt(from + i),
+                                bits.subSequence(from, to)));
+            }
+        }
+        if (length < width) extend(values, unknowns, length, width);
+        return new BitVector(values, unknowns, width);
+    }
+
+    /**
+     * Parses bits of a vector as they appear in VCD files.
+     *
+     * @see #parse(CharSequence, int, int, int)
+     */
+    public static BitVector parse(CharSequence bits, int width) {
+        return parse(bits, 0, bits.length(), width);
+    }
+
+    /**
+     * @param  width                    number of bits
+     * @return                          a vector with all bits set to x
+     * @throws IllegalArgumentException if width is less than 1
+     */
+    public static BitVector undefined(int width) {
+        if (width < 1) throw new IllegalArgumentException("width < 1");
+        long[] values = new long[getWordCount(width)];
+        Arrays.fill(values, -1L);
+        values[values.length - 1] = topMask(width);
+        return new BitVector(values, values.clone(), width);
+    }
+
+    /**
+     * Wraps planes without copying or validating them.<br>
+     * Only for planes built by this library, which are never modified
+     * afterwards.
+     */
+    static BitVector wrap(int width, long[] values, long[] unknowns) {
+        return new BitVector(values, unknowns, width);
+    }
+
+    /**
+     * Extends the bits in the planes above <code>length</code> up to
+     * <code>width</code>, following VCD rules - x and z digits are repeated,
+     * and 0 and 1 are extended with zeros
+     */
+    private static void extend(long[] values, long[] unknowns, int length, int width) {
+        int top = length - 1;
+        if ((unknowns[top >>> 6] >>> top & 1) == 0) return;
+        boolean undefined = (values[top >>> 6] >>> top & 1) != 0;
+        for (int word = length >>> 6; word < values.length; word++) {
+            long mask = word == values.length - 1 ? topMask(width) : -1L;
+            if (word == length >>> 6) mask &= -1L << length;
+            unknowns[word] |= mask;
+            if (undefined) values[word] |= mask;
+        }
+    }
+
+    private static long topMask(int width) {
+        return -1L >>> -width;
+    }
+}
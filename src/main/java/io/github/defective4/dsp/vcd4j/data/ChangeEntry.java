@@ -10,7 +10,7 @@ import java.util.Objects;
  *
  * @param <T> The type of value stored in the change entry.
  */
-public abstract sealed class ChangeEntry<T> permits BinaryChangeEntry, MultibitChangeEntry {
+public abstract sealed class ChangeEntry<T> permits BinaryChangeEntry, MultibitChangeEntry, VectorChangeEntry {
     private final T value;
     private final VariableDefinition variable;
 
@@ -32,7 +32,8 @@ public abstract sealed class ChangeEntry<T> permits BinaryChangeEntry, MultibitC
     /**
      * Checks if the change entry has an undefined value.<br>
      * For {@link BinaryChangeEntry} it's {@link State}.UNDEFINED<br>
-     * For {@link MultibitChangeEntry} it's {@link MultibitChangeEntry#UNDEFINED}
+     * For {@link MultibitChangeEntry} it's {@link MultibitChangeEntry#UNDEFINED}<br>
+     * For {@link VectorChangeEntry} it's a vector of x bits
      *
      * @return
      */
@@ -1,10 +1,26 @@
 package io.github.defective4.dsp.vcd4j.data;
 
+import java.util.Objects;
+
 /**
  * Represents a multi-bit (integer) change of variable's state
+ *
+ * @see VectorChangeEntry
  */
 public final class MultibitChangeEntry extends ChangeEntry<Integer> {
 
+    /**
+     * Maximum number of bits of values stored in multi-bit entries. Values of
+     * wider variables are parsed into {@link VectorChangeEntry} objects.
+     */
+    public static final int MAX_BIT_COUNT = 31;
+
+    /**
+     * Number of the smallest values whose entries are shared by
+     * {@link #of(VariableDefinition, int)}
+     */
+    private static final int SHARED_VALUES = 16;
+
     /**
      * Indicates that this entry has an undefined value
      */
@@ -34,4 +50,30 @@ public final class MultibitChangeEntry extends ChangeEntry<Integer> {
     public boolean isUndefined() {
         return getValue() == UNDEFINED;
     }
+
+    /**
+     * Returns a multi-bit change entry, shared if the value is small.<br>
+     * Entries of {@value #UNDEFINED} and values less than 16 are created on
+     * first use and cached in the variable definition, like entries returned by
+     * {@link BinaryChangeEntry#of(VariableDefinition, State)}. Other values
+     * get a new entry.
+     *
+     * @param  variable                 associated variable
+     * @param  value                    an integer value. It has to be more than
+     *                                  or equal to {@value #UNDEFINED}
+     * @return                          the entry
+     * @throws IllegalArgumentException if the value is less than
+     *                                  {@value #UNDEFINED} or its bits count is
+     *                                  more than
+     *                                  {@link VariableDefinition#getBitCount()}
+     */
+    public static MultibitChangeEntry of(VariableDefinition variable, int value) {
+        Objects.requireNonNull(variable);
+        if (value >= SHARED_VALUES || value < UNDEFINED) return new MultibitChangeEntry(variable, value);
+        MultibitChangeEntry[] entries = variable.multibitEntries;
+        if (entries == null) entries = variable.multibitEntries = new MultibitChangeEntry[SHARED_VALUES + 1];
+        MultibitChangeEntry entry = entries[value + 1];
+        if (entry == null) entry = entries[value + 1] = new MultibitChangeEntry(variable, value);
+        return entry;
+    }
 }
@@ -3,8 +3,14 @@ package io.github.defective4.dsp.vcd4j.data;
 import java.util.Objects;
 
 public class Scope {
+    /**
+     * Scope types defined by IEEE 1364 and IEEE 1800, along with VHDL types
+     * written by GHDL and other tools following GTKWave's extensions
+     */
     public enum Type {
-        MODULE
+        MODULE, TASK, FUNCTION, BEGIN, FORK, GENERATE, STRUCT, UNION, CLASS, INTERFACE, PACKAGE, PROGRAM,
+        VHDL_ARCHITECTURE, VHDL_PROCEDURE, VHDL_FUNCTION, VHDL_RECORD, VHDL_PROCESS, VHDL_BLOCK, VHDL_FOR_GENERATE,
+        VHDL_IF_GENERATE, VHDL_GENERATE, VHDL_PACKAGE
     }
 
     public static final Scope DEFAULT = new Scope(Type.MODULE, "default");
@@ -0,0 +1,360 @@
+package io.github.defective4.dsp.vcd4j.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchy of scopes and variables declared in a VCD header.
+ * <p>
+ * The tree has an unnamed root node, whose children are the top-level scopes.
+ * Every node holds its child scopes and variables in hash maps keyed by their
+ * names, so the tree doubles as a trie of hierarchical names - a variable or
+ * scope is resolved from a path such as <code>top.cpu.alu.result</code> in
+ * time proportional to the length of the path, regardless of the number of
+ * scopes and variables.
+ * </p>
+ * <p>
+ * A variable may be declared in multiple scopes, or under multiple names, by
+ * reusing its identifier. Such aliases are added with
+ * {@link Builder#addAlias(String, VariableDefinition)} and share a single
+ * definition, so every path of an alias resolves to the definition referenced
+ * by its value changes. Names under which variables were declared are
+ * available from {@link Node#getVariableNames()}.
+ * </p>
+ * Trees are built in a single pass over the header with {@link Builder}, and
+ * are immutable once built.
+ */
+public final class ScopeTree {
+    /**
+     * The builder class.<br>
+     * Scopes and variables are added in order of their declaration, as if the
+     * builder was reading <code>$scope</code>, <code>$var</code> and
+     * <code>$upscope</code> commands.
+     */
+    public static final class Builder {
+        private Node current;
+        private final Node root = new Node(null, null);
+
+        public Builder() {
+            current = root;
+        }
+
+        /**
+         * Adds a variable to the current scope under another name.<br>
+         * This is used for aliases - declarations reusing the identifier of a
+         * variable declared earlier, which refer to the same definition.
+         *
+         * @param  name                  name of the variable in the current scope
+         * @param  variable              a non-null variable definition
+         * @return
+         * @throws IllegalStateException if the tree was already built
+         */
+        public Builder addAlias(String name, VariableDefinition variable) {
+            Objects.requireNonNull(name);
+            Objects.requireNonNull(variable);
+            checkOpen().addVariable(name, variable);
+            return this;
+        }
+
+        /**
+         * Adds a variable to the current scope
+         *
+         * @param  variable              a non-null variable definition
+         * @return
+         * @throws IllegalStateException if the tree was already built
+         */
+        public Builder addVariable(VariableDefinition variable) {
+            Objects.requireNonNull(variable);
+            checkOpen().addVariable(variable.getName(), variable);
+            return this;
+        }
+
+        /**
+         * Enters a scope nested in the current scope.<br>
+         * If the current scope already has a child scope with the same name, it's
+         * entered again instead of creating a new one.
+         *
+         * @param  scope                 a non-null scope
+         * @return
+         * @throws IllegalStateException if the tree was already built
+         */
+        public Builder beginScope(Scope scope) {
+            Objects.requireNonNull(scope);
+            current = checkOpen().getOrAddChild(scope);
+            return this;
+        }
+
+        /**
+         * Builds the tree. Scopes that were not ended are closed.<br>
+         * The builder can't be used afterwards.
+         *
+         * @return                       the tree
+         * @throws IllegalStateException if the tree was already built
+         */
+        public ScopeTree build() {
+            checkOpen();
+            current = null;
+            return new ScopeTree(root);
+        }
+
+        /**
+         * Leaves the current scope, returning to its parent
+         *
+         * @return
+         * @throws IllegalStateException if there is no scope to leave, or the tree
+         *                               was already built
+         */
+        public Builder endScope() {
+            if (checkOpen() == root) throw new IllegalStateException("There is no scope to end");
+            current = current.parent;
+            return this;
+        }
+
+        /**
+         * @return number of scopes entered and not ended yet
+         */
+        public int getDepth() {
+            int depth = 0;
+            for (Node node = checkOpen(); node != root; node = node.parent) depth++;
+            return depth;
+        }
+
+        private Node checkOpen() {
+            if (current == null) throw new IllegalStateException("Tree was already built");
+            return current;
+        }
+    }
+
+    /**
+     * A node of the tree - the root node, or a scope with its child scopes and
+     * variables
+     */
+    public static final class Node {
+        private Map<String, Node> children;
+        private List<String> names;
+        private final Node parent;
+        private final Scope scope;
+        private Map<String, VariableDefinition> variableNames;
+        private List<VariableDefinition> variables;
+
+        private Node(Node parent, Scope scope) {
+            this.parent = parent;
+            this.scope = scope;
+        }
+
+        /**
+         * @param  name name of a child scope
+         * @return      the child scope, or <code>null</code> if there is none
+         */
+        public Node getChild(String name) {
+            return children == null ? null : children.get(name);
+        }
+
+        /**
+         * @return an unmodifiable collection of child scopes, in order of
+         *         declaration
+         */
+        public Collection<Node> getChildren() {
+            return children == null ? List.of() : Collections.unmodifiableCollection(children.values());
+        }
+
+        /**
+         * @return the parent node, or <code>null</code> for the root node
+         */
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * @return hierarchical name of the scope, with names of scopes separated
+         *         by {@value ScopeTree#SEPARATOR}. Empty for the root node
+         */
+        public String getPath() {
+            if (parent == null) return "";
+            String parentPath = parent.getPath();
+            return parentPath.isEmpty() ? scope.getName() : parentPath + SEPARATOR + scope.getName();
+        }
+
+        /**
+         * @return the scope, or <code>null</code> for the root node
+         */
+        public Scope getScope() {
+            return scope;
+        }
+
+        /**
+         * @param  name name of a variable declared in this scope
+         * @return      the variable, or <code>null</code> if there is none. If
+         *              multiple variables share the name, the first one is
+         *              returned
+         */
+        public VariableDefinition getVariable(String name) {
+            return variableNames == null ? null : variableNames.get(name);
+        }
+
+        /**
+         * @return an unmodifiable list of names under which variables were
+         *         declared in this scope, in the same order as
+         *         {@link #getVariables()}. Names of aliases may differ from names
+         *         of their definitions
+         */
+        public List<String> getVariableNames() {
+            return names == null ? List.of() : Collections.unmodifiableList(names);
+        }
+
+        /**
+         * @return an unmodifiable list of variables declared directly in this
+         *         scope, in order of declaration
+         */
+        public List<VariableDefinition> getVariables() {
+            return variables == null ? List.of() : Collections.unmodifiableList(variables);
+        }
+
+        public boolean isRoot() {
+            return parent == null;
+        }
+
+        @Override
+        public String toString() {
+            return "ScopeTree.Node [path=" + getPath() + ", children=" + getChildren().size() + ", variables="
+                    + getVariables().size() + "]";
+        }
+
+        private void addVariable(String name, VariableDefinition variable) {
+            if (variables == null) {
+                names = new ArrayList<>(4);
+                variables = new ArrayList<>(4);
+                variableNames = new LinkedHashMap<>(8);
+            }
+            names.add(name);
+            variables.add(variable);
+            variableNames.putIfAbsent(name, variable);
+        }
+
+        private Node getOrAddChild(Scope scope) {
+            if (children == null) children = new LinkedHashMap<>(8);
+            return children.computeIfAbsent(scope.getName(), name -> new Node(this, scope));
+        }
+    }
+
+    /**
+     * Separator of names in hierarchical paths
+     */
+    public static final char SEPARATOR = '.';
+
+    private final Node root;
+
+    private ScopeTree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Creates a copy of this tree with only the variables accepted by a
+     * predicate. All scopes are kept.
+     *
+     * @param  filter predicate selecting variables to keep
+     * @return        a new tree
+     */
+    public ScopeTree filter(Predicate<VariableDefinition> filter) {
+        Objects.requireNonNull(filter);
+        Builder builder = new Builder();
+        copy(root, builder, filter);
+        return builder.build();
+    }
+
+    /**
+     * Finds a scope by its hierarchical name
+     *
+     * @param  path names of nested scopes separated by {@value #SEPARATOR},
+     *              such as <code>top.cpu.alu</code>. An empty path denotes the
+     *              root node
+     * @return      the scope, or <code>null</code> if there is none
+     */
+    public Node findScope(String path) {
+        Objects.requireNonNull(path);
+        Node node = root;
+        if (path.isEmpty()) return node;
+        int start = 0;
+        while (node != null) {
+            int end = path.indexOf(SEPARATOR, start);
+            if (end < 0) return node.getChild(path.substring(start));
+            node = node.getChild(path.substring(start, end));
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Finds a variable by its hierarchical name.<br>
+     * Names of scopes are matched first, and the rest of the path is the name
+     * of a variable in the deepest matching scope, so names of variables may
+     * contain {@value #SEPARATOR} as well.
+     *
+     * @param  path names of nested scopes and the variable separated by
+     *              {@value #SEPARATOR}, such as <code>top.cpu.alu.result</code>
+     * @return      the variable, or <code>null</code> if there is none
+     */
+    public VariableDefinition findVariable(String path) {
+        Objects.requireNonNull(path);
+        Node node = root;
+        int start = 0;
+        while (true) {
+            int end = path.indexOf(SEPARATOR, start);
+            Node child = end < 0 ? null : node.getChild(path.substring(start, end));
+            if (child == null) return node.getVariable(path.substring(start));
+            node = child;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return the root node. Its children are the top-level scopes
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the first top-level scope, or <code>null</code> if there are no
+     *         scopes
+     */
+    public Scope getTopScope() {
+        for (Node child : root.getChildren()) return child.getScope();
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "ScopeTree [scopes=" + root.getChildren().size() + "]";
+    }
+
+    /**
+     * Creates a tree with a single scope holding all of the variables
+     *
+     * @param  scope     the scope
+     * @param  variables variables declared in the scope
+     * @return           a new tree
+     */
+    public static ScopeTree of(Scope scope, Collection<VariableDefinition> variables) {
+        Objects.requireNonNull(variables);
+        Builder builder = new Builder().beginScope(scope);
+        for (VariableDefinition variable : variables) builder.addVariable(variable);
+        return builder.build();
+    }
+
+    private static void copy(Node node, Builder builder, Predicate<VariableDefinition> filter) {
+        for (int i = 0; i < node.getVariables().size(); i++)
+            if (filter.test(node.variables.get(i))) builder.addAlias(node.names.get(i), node.variables.get(i));
+        for (Node child : node.getChildren()) {
+            builder.beginScope(child.getScope());
+            copy(child, builder, filter);
+            builder.endScope();
+        }
+    }
+}
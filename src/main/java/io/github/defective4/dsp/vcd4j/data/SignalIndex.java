@@ -0,0 +1,252 @@
+package io.github.defective4.dsp.vcd4j.data;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import io.github.defective4.dsp.vcd4j.player.VCDPlayer;
+
+/**
+ * Per-signal time index of a VCD.
+ * <p>
+ * The index keeps sorted transition arrays for every variable, and answers
+ * value-at-time, next/previous transition and range queries with a binary
+ * search, in <i>O(log n)</i> time.
+ * </p>
+ * <p>
+ * Transition times reported by this index are the times at which a value takes
+ * effect. A change stored under timestamp <i>t<sub>i</sub></i> in
+ * {@link VCD#getValueChanges()} takes effect at the preceding timestamp
+ * <i>t<sub>i-1</sub></i>, or at 0 if it's stored under the first timestamp.
+ * This is the same timing {@link VCDPlayer} uses to dispatch changes.
+ * </p>
+ * The index is a snapshot - it doesn't reflect changes made to the VCD after it
+ * was built.
+ */
+public class SignalIndex {
+    private static final State[] STATES = State.values();
+
+    private final ValueChangeColumns columns;
+    private final byte[][] states;
+    private final long[][] times;
+    private final int[][] values;
+
+    /**
+     * Builds an index of value changes stored in columns
+     *
+     * @param columns value changes to index
+     */
+    public SignalIndex(ValueChangeColumns columns) {
+        Objects.requireNonNull(columns);
+        this.columns = columns;
+        int count = columns.getVariableCount();
+        long[] unique = new long[columns.getTimestampCount()];
+        for (int i = 0; i < unique.length; i++) unique[i] = columns.getUniqueTimestamp(i);
+        times = new long[count][];
+        states = new byte[count][];
+        values = new int[count][];
+        for (int var = 0; var < count; var++) {
+            int changes = columns.getChangeCount(var);
+            long[] varTimes = times[var] = new long[changes];
+            if (columns.isBinary(var)) states[var] = new byte[changes];
+            else if (!columns.isWide(var)) values[var] = new int[changes];
+            for (int i = 0; i < changes; i++) {
+                int block = Arrays.binarySearch(unique, columns.getTimestamp(var, i));
+                varTimes[i] = block == 0 ? 0 : unique[block - 1];
+                if (states[var] != null) states[var][i] = (byte) columns.getState(var, i).ordinal();
+                else if (values[var] != null) values[var][i] = columns.getValue(var, i);
+            }
+        }
+    }
+
+    /**
+     * Builds an index of the VCD's value changes
+     *
+     * @param vcd VCD to index
+     */
+    public SignalIndex(VCD vcd) {
+        this(Objects.requireNonNull(vcd).getColumns());
+    }
+
+    /**
+     * @param  variable index of the variable
+     * @param  time     time to search for
+     * @return          index of the first transition at or after the given time,
+     *                  or {@link #getTransitionCount(int)} if there is none
+     */
+    public int ceilingTransition(int variable, long time) {
+        long[] varTimes = times[variable];
+        int low = 0, high = varTimes.length;
+        while (low < high) {
+            int mid = low + high >>> 1;
+            if (varTimes[mid] < time) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @param  variable index of the variable
+     * @param  time     time to search for
+     * @return          index of the last transition at or before the given time,
+     *                  or -1 if there is none
+     */
+    public int floorTransition(int variable, long time) {
+        long[] varTimes = times[variable];
+        int low = 0, high = varTimes.length;
+        while (low < high) {
+            int mid = low + high >>> 1;
+            if (varTimes[mid] <= time) low = mid + 1;
+            else high = mid;
+        }
+        return low - 1;
+    }
+
+    /**
+     * @return indexed value changes
+     */
+    public ValueChangeColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param  variable                 a variable definition
+     * @param  time                     reference time
+     * @return                          time of the first transition strictly after
+     *                                  the given time, or -1 if there is none
+     * @throws IllegalArgumentException if the variable is not indexed
+     */
+    public long getNextTransitionTime(VariableDefinition variable, long time) {
+        int var = checkVariable(variable);
+        int transition = floorTransition(var, time) + 1;
+        return transition < times[var].length ? times[var][transition] : -1;
+    }
+
+    /**
+     * @param  variable                 a variable definition
+     * @param  time                     reference time
+     * @return                          time of the last transition strictly before
+     *                                  the given time, or -1 if there is none
+     * @throws IllegalArgumentException if the variable is not indexed
+     */
+    public long getPreviousTransitionTime(VariableDefinition variable, long time) {
+        int var = checkVariable(variable);
+        int transition = ceilingTransition(var, time) - 1;
+        return transition >= 0 ? times[var][transition] : -1;
+    }
+
+    /**
+     * @param  variable   index of a 1-bit variable
+     * @param  transition index of the transition
+     * @return            state of the variable after the transition
+     */
+    public State getState(int variable, int transition) {
+        return STATES[states[variable][transition]];
+    }
+
+    /**
+     * @param  variable   index of the variable
+     * @param  transition index of the transition
+     * @return            a new change entry describing the transition
+     */
+    public ChangeEntry<?> getTransition(int variable, int transition) {
+        VariableDefinition definition = columns.getVariable(variable);
+        if (states[variable] != null) return BinaryChangeEntry.of(definition, getState(variable, transition));
+        if (values[variable] == null || columns.getUnknownBits(variable, transition) != 0)
+            return new VectorChangeEntry(definition, getVector(variable, transition));
+        return MultibitChangeEntry.of(definition, values[variable][transition]);
+    }
+
+    /**
+     * @param  variable index of the variable
+     * @return          number of transitions of the variable
+     */
+    public int getTransitionCount(int variable) {
+        return times[variable].length;
+    }
+
+    /**
+     * Returns all transitions of a variable that take effect in the given time
+     * range.<br>
+     * If the variable changed multiple times at the same time, only the last
+     * change is included.
+     *
+     * @param  variable                 a variable definition
+     * @param  from                     start of the range, inclusive
+     * @param  to                       end of the range, exclusive
+     * @return                          a new map of transitions, ordered by time
+     * @throws IllegalArgumentException if the variable is not indexed
+     */
+    public Map<Long, ChangeEntry<?>> getTransitions(VariableDefinition variable, long from, long to) {
+        int var = checkVariable(variable);
+        Map<Long, ChangeEntry<?>> transitions = new LinkedHashMap<>();
+        for (int i = ceilingTransition(var, from); i < times[var].length && times[var][i] < to; i++)
+            transitions.put(times[var][i], getTransition(var, i));
+        return transitions;
+    }
+
+    /**
+     * @param  variable   index of the variable
+     * @param  transition index of the transition
+     * @return            time at which the transition takes effect
+     */
+    public long getTransitionTime(int variable, int transition) {
+        return times[variable][transition];
+    }
+
+    /**
+     * @param  variable   index of a multi-bit variable that is not wide
+     * @param  transition index of the transition
+     * @return            value of the variable after the transition, or
+     *                    {@link MultibitChangeEntry#UNDEFINED}. If some bits of
+     *                    the value are unknown, this is its value plane
+     * @see               #getVector(int, int)
+     */
+    public int getValue(int variable, int transition) {
+        return values[variable][transition];
+    }
+
+    /**
+     * Finds the value a variable held at the given time.
+     *
+     * @param  variable                 a variable definition
+     * @param  time                     time to query
+     * @return                          the last change of the variable that took
+     *                                  effect at or before the given time, or
+     *                                  <code>null</code> if the variable had no
+     *                                  value yet
+     * @throws IllegalArgumentException if the variable is not indexed
+     */
+    public ChangeEntry<?> getValueAt(VariableDefinition variable, long time) {
+        int var = checkVariable(variable);
+        int transition = floorTransition(var, time);
+        return transition < 0 ? null : getTransition(var, transition);
+    }
+
+    /**
+     * @param  variable   index of a multi-bit variable
+     * @param  transition index of the transition
+     * @return            value of the variable after the transition
+     */
+    public BitVector getVector(int variable, int transition) {
+        // Transitions of a variable correspond to its changes in the columns
+        return columns.getVector(variable, transition);
+    }
+
+    /**
+     * @param  variable a variable definition
+     * @return          index of the variable, or -1 if it's not indexed
+     */
+    public int indexOf(VariableDefinition variable) {
+        return columns.indexOf(variable.getIdentifier());
+    }
+
+    private int checkVariable(VariableDefinition variable) {
+        Objects.requireNonNull(variable);
+        int index = indexOf(variable);
+        if (index < 0) throw new IllegalArgumentException(
+                String.format("Variable \"%s\" is not indexed", variable.getIdentifier()));
+        return index;
+    }
+}
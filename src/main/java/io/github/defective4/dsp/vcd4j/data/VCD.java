@@ -16,12 +16,16 @@ import io.github.defective4.dsp.vcd4j.player.VCDPlayer;
  * This class provides methods for accessing and manipulating the fields of a
  * VCD object, including date, version, variable definitions, and value changes.
  * </p>
+ * Value changes are stored either in a map of {@link ChangeEntry} objects, or in
+ * primitive-backed {@link ValueChangeColumns} (see {@link #isColumnar()}).
  */
 public class VCD {
+    private ValueChangeColumns columns;
     private String date, version, comment;
     private Scope scope;
+    private ScopeTree scopeTree;
     private TimeScale timeScale;
-    private final Map<Long, List<ChangeEntry<?>>> valueChanges;
+    private Map<Long, List<ChangeEntry<?>>> valueChanges;
     private final Map<String, VariableDefinition> variableDefinitions;
 
     /**
@@ -56,6 +60,34 @@ public class VCD {
         this.variableDefinitions = variableDefinitions;
     }
 
+    /**
+     * Constructs a new Value Change Dump backed by columnar storage.<br>
+     * Variable definitions are taken from the columns. The map returned by
+     * {@link #getValueChanges()} is only created when that method is first called.
+     *
+     * @param date      human readable date of creation
+     * @param version   human readable version of software that created this VCD
+     * @param comment
+     * @param scope     primary scope of the VCD
+     * @param timeScale time scale of this VCD
+     * @param columns   value changes stored in columns
+     */
+    public VCD(String date, String version, String comment, Scope scope, TimeScale timeScale,
+            ValueChangeColumns columns) {
+        Objects.requireNonNull(scope);
+        Objects.requireNonNull(timeScale);
+        Objects.requireNonNull(columns);
+        this.date = date;
+        this.version = version;
+        this.comment = comment;
+        this.scope = scope;
+        this.timeScale = timeScale;
+        this.columns = columns;
+        variableDefinitions = new LinkedHashMap<>();
+        for (VariableDefinition variable : columns.getVariables())
+            variableDefinitions.put(variable.getIdentifier(), variable);
+    }
+
     /**
      * Simplified constructor for when you need to manually construct the VCD
      *
@@ -79,6 +111,7 @@ public class VCD {
     public void adjustTimeScale() {
         long oldValue = timeScale.getResolution();
         timeScale = new TimeScale(timeScale.getUnit(), 1);
+        Map<Long, List<ChangeEntry<?>>> valueChanges = getValueChanges();
         Map<Long, List<ChangeEntry<?>>> converted = new LinkedHashMap<>();
         for (Map.Entry<Long, List<ChangeEntry<?>>> entry : valueChanges.entrySet()) {
             converted.put(entry.getKey() * oldValue, entry.getValue());
@@ -87,6 +120,18 @@ public class VCD {
         valueChanges.putAll(converted);
     }
 
+    /**
+     * Returns value changes of this VCD in columnar form.<br>
+     * If this VCD is backed by columns, they are returned as-is. Otherwise a new
+     * snapshot of {@link #getValueChanges()} is created on every call.
+     *
+     * @return value changes stored in columns
+     */
+    public ValueChangeColumns getColumns() {
+        if (columns != null) return columns;
+        return ValueChangeColumns.of(valueChanges, variableDefinitions);
+    }
+
     public String getComment() {
         return comment;
     }
@@ -99,11 +144,35 @@ public class VCD {
         return scope;
     }
 
+    /**
+     * Returns the hierarchy of scopes and variables of this VCD.<br>
+     * If no tree was set, a tree with the primary scope holding all variable
+     * definitions is created on every call.
+     *
+     * @return tree of scopes
+     * @see    #setScopeTree(ScopeTree)
+     */
+    public ScopeTree getScopeTree() {
+        if (scopeTree != null) return scopeTree;
+        return ScopeTree.of(scope, variableDefinitions.values());
+    }
+
     public TimeScale getTimeScale() {
         return timeScale;
     }
 
+    /**
+     * Returns a mutable map of value changes.<br>
+     * If this VCD is backed by columns, they are converted to a map on the first
+     * call, and the map becomes the primary storage from then on.
+     *
+     * @return map of value changes
+     */
     public Map<Long, List<ChangeEntry<?>>> getValueChanges() {
+        if (valueChanges == null) {
+            valueChanges = columns.toValueChanges();
+            columns = null;
+        }
         return valueChanges;
     }
 
@@ -115,6 +184,14 @@ public class VCD {
         return version;
     }
 
+    /**
+     * @return <code>true</code> if value changes of this VCD are currently stored
+     *         in {@link ValueChangeColumns}
+     */
+    public boolean isColumnar() {
+        return columns != null;
+    }
+
     public void setComment(String comment) {
         this.comment = comment;
     }
@@ -127,6 +204,18 @@ public class VCD {
         this.scope = scope;
     }
 
+    /**
+     * Sets the hierarchy of scopes and variables of this VCD.<br>
+     * Variable definitions missing from the tree are written to the primary
+     * scope by {@link io.github.defective4.dsp.vcd4j.file.VCDWriter}.
+     *
+     * @param scopeTree tree of scopes, or <code>null</code> to place all
+     *                  variables in the primary scope
+     */
+    public void setScopeTree(ScopeTree scopeTree) {
+        this.scopeTree = scopeTree;
+    }
+
     public void setTimeScale(TimeScale timeScale) {
         this.timeScale = timeScale;
     }
@@ -153,6 +242,7 @@ public class VCD {
         Objects.requireNonNull(unit);
         if (adjustValues) {
             double multiplier = timeScale.getUnit().getNth() / unit.getNth();
+            Map<Long, List<ChangeEntry<?>>> valueChanges = getValueChanges();
             Map<Long, List<ChangeEntry<?>>> converted = new LinkedHashMap<>();
             for (Map.Entry<Long, List<ChangeEntry<?>>> entry : valueChanges.entrySet()) {
                 double result;
@@ -178,8 +268,8 @@ public class VCD {
     @Override
     public String toString() {
         return "VCD [date=" + date + ", version=" + version + ", comment=" + comment + ", scope=" + scope
-                + ", timeScale=" + timeScale + ", valueChanges=" + valueChanges + ", variableDefinitions="
-                + variableDefinitions + "]";
+                + ", timeScale=" + timeScale + ", valueChanges=" + (columns == null ? valueChanges : columns)
+                + ", variableDefinitions=" + variableDefinitions + "]";
     }
 
     /**
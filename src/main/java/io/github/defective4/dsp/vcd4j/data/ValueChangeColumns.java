@@ -0,0 +1,712 @@
+package io.github.defective4.dsp.vcd4j.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Columnar, primitive-backed storage of value changes.
+ * <p>
+ * Value changes are stored per variable in primitive arrays - a
+ * <code>long[]</code> of timestamps, and either a <code>byte[]</code> of
+ * {@link State} ordinals (for 1-bit variables), a <code>long[]</code> of packed
+ * {@link BitVector} planes (for {@link VariableDefinition#isWide() wide}
+ * variables) or an <code>int[]</code> of multi-bit values (for other
+ * variables). Multi-bit values with some, but not all, bits unknown have their
+ * unknown plane stored in an additional <code>int[]</code>, allocated on the
+ * first such value. Variables are addressed by a compact <code>int</code>
+ * index, assigned in order of definition.
+ * </p>
+ * <p>
+ * Timestamps have the same meaning as keys of {@link VCD#getValueChanges()},
+ * that is a change is stored under the timestamp that follows it in a VCD file.
+ * In addition to per-variable columns, all distinct timestamps are kept in a
+ * single sorted array, so blocks with no changes are preserved.
+ * </p>
+ * Instances are immutable and can be constructed with {@link Builder} or
+ * {@link #of(Map, Map)}.
+ */
+public class ValueChangeColumns {
+    /**
+     * The builder class
+     */
+    public static class Builder {
+        private int[] counts = new int[8];
+        private int extraTimestampCount;
+        private long[] extraTimestamps = new long[8];
+        private final Map<String, Integer> indices = new HashMap<>();
+        private boolean presorted = true;
+        private int[] registered = new int[8];
+        private byte[][] states = new byte[8][];
+        private long[][] timestamps = new long[8][];
+        private int[][] unknowns = new int[8][];
+        private int[][] values = new int[8][];
+        private final List<VariableDefinition> variables = new ArrayList<>();
+        private long[][] vectors = new long[8][];
+
+        /**
+         * Appends a 1-bit change to the variable's column
+         *
+         * @param  variable                 index of the variable
+         * @param  timestamp                timestamp of the change. It can't be
+         *                                  less than the timestamp of the
+         *                                  variable's previous change
+         * @param  state                    a non-null state
+         * @return
+         * @throws IllegalArgumentException if the variable is not a 1-bit variable,
+         *                                  or the timestamp is out of order
+         */
+        public Builder addBinaryChange(int variable, long timestamp, State state) {
+            Objects.requireNonNull(state);
+            if (states[checkIndex(variable)] == null)
+                throw new IllegalArgumentException("Variable " + variable + " is not a 1-bit variable");
+            int index = append(variable, timestamp);
+            states[variable] = ensureCapacity(states[variable], index + 1);
+            states[variable][index] = (byte) state.ordinal();
+            return this;
+        }
+
+        /**
+         * Appends a change entry to the variable's column
+         *
+         * @param  variable                 index of the variable
+         * @param  timestamp                timestamp of the change. It can't be
+         *                                  less than the timestamp of the
+         *                                  variable's previous change
+         * @param  change                   a non-null change entry
+         * @return
+         * @throws IllegalArgumentException if the change doesn't match the
+         *                                  variable, or the timestamp is out of
+         *                                  order
+         */
+        public Builder addChange(int variable, long timestamp, ChangeEntry<?> change) {
+            Objects.requireNonNull(change);
+            if (change instanceof BinaryChangeEntry binary)
+                return addBinaryChange(variable, timestamp, binary.getValue());
+            if (change instanceof MultibitChangeEntry multibit)
+                return addMultibitChange(variable, timestamp, multibit.getValue());
+            return addVectorChange(variable, timestamp, ((VectorChangeEntry) change).getValue());
+        }
+
+        /**
+         * Appends a multi-bit change to the variable's column.<br>
+         * Values of wide variables are converted to {@link BitVector} objects.
+         *
+         * @param  variable                 index of the variable
+         * @param  timestamp                timestamp of the change. It can't be
+         *                                  less than the timestamp of the
+         *                                  variable's previous change
+         * @param  value                    value of the change, or
+         *                                  {@link MultibitChangeEntry#UNDEFINED}
+         * @return
+         * @throws IllegalArgumentException if the variable is a 1-bit variable, the
+         *                                  value is invalid, or the timestamp is
+         *                                  out of order
+         */
+        public Builder addMultibitChange(int variable, long timestamp, int value) {
+            if (states[checkIndex(variable)] != null)
+                throw new IllegalArgumentException("Variable " + variable + " is not a multi-bit variable");
+            if (value < MultibitChangeEntry.UNDEFINED) throw new IllegalArgumentException("value < -1");
+            if (vectors[variable] != null) {
+                int width = variables.get(variable).getBitCount();
+                BitVector vector = value == MultibitChangeEntry.UNDEFINED ? BitVector.undefined(width)
+                        : BitVector.of(width, value);
+                return addVectorChange(variable, timestamp, vector);
+            }
+            if (value != MultibitChangeEntry.UNDEFINED && 32 - Integer.numberOfLeadingZeros(value) > variables
+                    .get(variable)
+                    .getBitCount())
+                throw new IllegalArgumentException(
+                        "value must take less or equal bits to the defined variable's bitCount");
+            int index = append(variable, timestamp);
+            values[variable] = ensureCapacity(values[variable], index + 1);
+            values[variable][index] = value;
+            return this;
+        }
+
+        /**
+         * Appends a vector change to the variable's column.<br>
+         * Vectors of variables that are not wide are stored as integers, with an
+         * additional unknown plane if some of their bits are x or z.
+         *
+         * @param  variable                 index of the variable
+         * @param  timestamp                timestamp of the change. It can't be
+         *                                  less than the timestamp of the
+         *                                  variable's previous change
+         * @param  value                    a non-null vector, as wide as the
+         *                                  variable
+         * @return
+         * @throws IllegalArgumentException if the variable is a 1-bit variable, the
+         *                                  vector's width doesn't match, or the
+         *                                  timestamp is out of order
+         */
+        public Builder addVectorChange(int variable, long timestamp, BitVector value) {
+            Objects.requireNonNull(value);
+            if (states[checkIndex(variable)] != null)
+                throw new IllegalArgumentException("Variable " + variable + " is not a multi-bit variable");
+            if (value.getWidth() != variables.get(variable).getBitCount()) throw new IllegalArgumentException(
+                    "Vector width must be equal to the defined variable's bitCount");
+            if (vectors[variable] == null) {
+                if (value.isUndefined()) return addMultibitChange(variable, timestamp, MultibitChangeEntry.UNDEFINED);
+                addMultibitChange(variable, timestamp, (int) value.getValueWord(0));
+                if (value.isKnown()) return this;
+                int index = counts[variable] - 1;
+                unknowns[variable] = unknowns[variable] == null ? new int[values[variable].length]
+                        : ensureCapacity(unknowns[variable], index + 1);
+                unknowns[variable][index] = (int) value.getUnknownWord(0);
+                return this;
+            }
+            int index = append(variable, timestamp);
+            int words = value.getWordCount();
+            int offset = index * words * 2;
+            long[] column = vectors[variable] = ensureCapacity(vectors[variable], offset + words * 2);
+            for (int i = 0; i < words; i++) {
+                column[offset + i] = value.getValueWord(i);
+                column[offset + words + i] = value.getUnknownWord(i);
+            }
+            return this;
+        }
+
+        /**
+         * Registers a timestamp that has no changes of its own.<br>
+         * Timestamps of changes are registered automatically.
+         *
+         * @param  timestamp the timestamp
+         * @return
+         */
+        public Builder addTimestamp(long timestamp) {
+            if (extraTimestampCount > 0 && extraTimestamps[extraTimestampCount - 1] >= timestamp) presorted = false;
+            extraTimestamps = ensureCapacity(extraTimestamps, extraTimestampCount + 1);
+            extraTimestamps[extraTimestampCount++] = timestamp;
+            return this;
+        }
+
+        /**
+         * Defines a new variable
+         *
+         * @param  variable                 a non-null variable definition
+         * @return                          index of the variable
+         * @throws IllegalArgumentException if a variable with the same identifier
+         *                                  is already defined
+         */
+        public int addVariable(VariableDefinition variable) {
+            Objects.requireNonNull(variable);
+            if (indices.containsKey(variable.getIdentifier())) throw new IllegalArgumentException(
+                    String.format("Variable \"%s\" is already defined", variable.getIdentifier()));
+            int index = variables.size();
+            if (index == counts.length) {
+                int capacity = index * 2;
+                counts = Arrays.copyOf(counts, capacity);
+                registered = Arrays.copyOf(registered, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                states = Arrays.copyOf(states, capacity);
+                values = Arrays.copyOf(values, capacity);
+                unknowns = Arrays.copyOf(unknowns, capacity);
+                vectors = Arrays.copyOf(vectors, capacity);
+            }
+            timestamps[index] = new long[8];
+            if (variable.getBitCount() == 1) states[index] = new byte[8];
+            else if (variable.isWide()) vectors[index] = new long[16 * BitVector.getWordCount(variable.getBitCount())];
+            else values[index] = new int[8];
+            variables.add(variable);
+            indices.put(variable.getIdentifier(), index);
+            return index;
+        }
+
+        public ValueChangeColumns build() {
+            int variableCount = variables.size();
+            long[] all = extraTimestamps;
+            int distinct = extraTimestampCount;
+            if (!presorted) {
+                int total = extraTimestampCount;
+                for (int i = 0; i < variableCount; i++) total += counts[i];
+                all = Arrays.copyOf(extraTimestamps, total);
+                int pos = extraTimestampCount;
+                for (int i = 0; i < variableCount; i++) {
+                    System.arraycopy(timestamps[i], 0, all, pos, counts[i]);
+                    pos += counts[i];
+                }
+                Arrays.sort(all);
+                distinct = 0;
+                for (int i = 0; i < all.length; i++) if (i == 0 || all[i] != all[i - 1]) all[distinct++] = all[i];
+            }
+
+            long[][] timestamps = new long[variableCount][];
+            byte[][] states = new byte[variableCount][];
+            int[][] values = new int[variableCount][];
+            int[][] unknowns = new int[variableCount][];
+            long[][] vectors = new long[variableCount][];
+            for (int i = 0; i < variableCount; i++) {
+                timestamps[i] = Arrays.copyOf(this.timestamps[i], counts[i]);
+                if (this.states[i] != null) states[i] = Arrays.copyOf(this.states[i], counts[i]);
+                else if (this.vectors[i] != null) vectors[i] = Arrays.copyOf(this.vectors[i],
+                        counts[i] * 2 * BitVector.getWordCount(variables.get(i).getBitCount()));
+                else values[i] = Arrays.copyOf(this.values[i], counts[i]);
+                if (this.unknowns[i] != null) unknowns[i] = Arrays.copyOf(this.unknowns[i], counts[i]);
+            }
+            return new ValueChangeColumns(variables.toArray(new VariableDefinition[0]), new HashMap<>(indices),
+                    timestamps, states, values, unknowns, vectors, Arrays.copyOf(all, distinct));
+        }
+
+        /**
+         * @param  variable index of the variable
+         * @return          definition of the variable
+         */
+        public VariableDefinition getVariable(int variable) {
+            return variables.get(checkIndex(variable));
+        }
+
+        /**
+         * @return number of added variables
+         */
+        public int getVariableCount() {
+            return variables.size();
+        }
+
+        /**
+         * @param  identifier variable identifier
+         * @return            index of the variable, or -1 if it's not defined
+         */
+        public int indexOf(String identifier) {
+            Integer index = indices.get(identifier);
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * @param  variable index of the variable
+         * @return          <code>true</code> if the variable is a 1-bit variable
+         */
+        public boolean isBinary(int variable) {
+            return states[checkIndex(variable)] != null;
+        }
+
+        /**
+         * @param  variable index of the variable
+         * @return          <code>true</code> if the variable is a wide variable
+         * @see             VariableDefinition#isWide()
+         */
+        public boolean isWide(int variable) {
+            return vectors[checkIndex(variable)] != null;
+        }
+
+        private int append(int variable, long timestamp) {
+            int index = counts[variable];
+            long[] column = timestamps[variable];
+            if (index > 0 && column[index - 1] > timestamp) throw new IllegalArgumentException(String
+                    .format("Timestamp %s is less than previous timestamp %s of variable %s", timestamp,
+                            column[index - 1], variable));
+            column = timestamps[variable] = ensureCapacity(column, index + 1);
+            column[index] = timestamp;
+            counts[variable]++;
+            if (presorted) presorted = isRegistered(variable, timestamp);
+            return index;
+        }
+
+        private int checkIndex(int variable) {
+            if (variable < 0 || variable >= variables.size())
+                throw new IllegalArgumentException("Undefined variable index " + variable);
+            return variable;
+        }
+
+        /**
+         * Checks if the timestamp of a variable's change was registered with
+         * {@link #addTimestamp(long)}. Only valid while registered timestamps are
+         * strictly increasing.<br>
+         * Changes are usually added right after their timestamp, or shortly after
+         * the variable's previous change, so the search starts from the last
+         * registered timestamp and then gallops forward from the timestamp of the
+         * variable's previous change.
+         */
+        private boolean isRegistered(int variable, long timestamp) {
+            int count = extraTimestampCount;
+            if (count > 0 && extraTimestamps[count - 1] == timestamp) {
+                registered[variable] = count - 1;
+                return true;
+            }
+            int low = registered[variable], step = 1;
+            while (low + step < count && extraTimestamps[low + step] < timestamp) step <<= 1;
+            int found = Arrays.binarySearch(extraTimestamps, low + (step >> 1), Math.min(low + step + 1, count),
+                    timestamp);
+            if (found < 0) return false;
+            registered[variable] = found;
+            return true;
+        }
+    }
+
+    /**
+     * Iterates over all changes in timestamp order.<br>
+     * Changes with equal timestamps are visited in order of variable indices.
+     */
+    public final class Cursor {
+        private int change = -1;
+        private final int[] heap;
+        private int heapSize;
+        private final int[] positions;
+        private int variable = -1;
+
+        private Cursor(long from) {
+            positions = new int[variables.length];
+            heap = new int[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                long[] column = timestamps[i];
+                int low = 0, high = column.length;
+                while (low < high) {
+                    int mid = low + high >>> 1;
+                    if (column[mid] < from) low = mid + 1;
+                    else high = mid;
+                }
+                positions[i] = low;
+                if (low < column.length) push(i);
+            }
+        }
+
+        /**
+         * @return index of the current change in its variable's column
+         */
+        public int getChangeIndex() {
+            checkCurrent();
+            return change;
+        }
+
+        public long getTimestamp() {
+            checkCurrent();
+            return timestamps[variable][change];
+        }
+
+        /**
+         * @return index of the variable the current change belongs to
+         */
+        public int getVariableIndex() {
+            checkCurrent();
+            return variable;
+        }
+
+        public boolean hasNext() {
+            return heapSize > 0;
+        }
+
+        /**
+         * Moves the cursor to the next change
+         *
+         * @return <code>false</code> if there are no more changes
+         */
+        public boolean next() {
+            if (heapSize == 0) {
+                variable = -1;
+                return false;
+            }
+            variable = heap[0];
+            change = positions[variable]++;
+            if (positions[variable] < timestamps[variable].length) siftDown(0);
+            else {
+                heap[0] = heap[--heapSize];
+                siftDown(0);
+            }
+            return true;
+        }
+
+        /**
+         * @return                        timestamp of the next change
+         * @throws NoSuchElementException if there are no more changes
+         */
+        public long peekTimestamp() {
+            if (heapSize == 0) throw new NoSuchElementException();
+            return timestamps[heap[0]][positions[heap[0]]];
+        }
+
+        private void checkCurrent() {
+            if (variable < 0) throw new IllegalStateException("Cursor is not positioned on a change");
+        }
+
+        private boolean less(int a, int b) {
+            long ta = timestamps[a][positions[a]];
+            long tb = timestamps[b][positions[b]];
+            return ta < tb || ta == tb && a < b;
+        }
+
+        private void push(int var) {
+            int i = heapSize++;
+            heap[i] = var;
+            while (i > 0) {
+                int parent = i - 1 >> 1;
+                if (!less(heap[i], heap[parent])) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= heapSize) return;
+                int smallest = left + 1 < heapSize && less(heap[left + 1], heap[left]) ? left + 1 : left;
+                if (!less(heap[smallest], heap[i])) return;
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+
+    private static final State[] STATES = State.values();
+
+    private final Map<String, Integer> indices;
+    private final byte[][] states;
+    private final long[][] timestamps;
+    private final long[] uniqueTimestamps;
+    private final int[][] unknowns;
+    private final int[][] values;
+    private final VariableDefinition[] variables;
+    private final long[][] vectors;
+
+    private ValueChangeColumns(VariableDefinition[] variables, Map<String, Integer> indices, long[][] timestamps,
+            byte[][] states, int[][] values, int[][] unknowns, long[][] vectors, long[] uniqueTimestamps) {
+        this.variables = variables;
+        this.indices = indices;
+        this.timestamps = timestamps;
+        this.states = states;
+        this.values = values;
+        this.unknowns = unknowns;
+        this.vectors = vectors;
+        this.uniqueTimestamps = uniqueTimestamps;
+    }
+
+    /**
+     * @return a new cursor positioned before the first change
+     */
+    public Cursor cursor() {
+        return new Cursor(Long.MIN_VALUE);
+    }
+
+    /**
+     * Creates a cursor positioned before the first change stored under the given
+     * timestamp or later.<br>
+     * Each variable's column is searched separately, so this takes
+     * <i>O(v log n)</i> time for <i>v</i> variables.
+     *
+     * @param  timestamp the timestamp
+     * @return           a new cursor
+     */
+    public Cursor cursor(long timestamp) {
+        return new Cursor(timestamp);
+    }
+
+    /**
+     * @param  variable index of the variable
+     * @return          number of changes of the variable
+     */
+    public int getChangeCount(int variable) {
+        return timestamps[variable].length;
+    }
+
+    /**
+     * @param  variable index of a 1-bit variable
+     * @param  change   index of the change
+     * @return          state of the variable after the change
+     */
+    public State getState(int variable, int change) {
+        return STATES[states[variable][change]];
+    }
+
+    /**
+     * @param  variable index of the variable
+     * @param  change   index of the change
+     * @return          timestamp under which the change is stored
+     */
+    public long getTimestamp(int variable, int change) {
+        return timestamps[variable][change];
+    }
+
+    /**
+     * @return number of distinct timestamps
+     */
+    public int getTimestampCount() {
+        return uniqueTimestamps.length;
+    }
+
+    /**
+     * @param  index index of the timestamp
+     * @return       distinct timestamp, in ascending order
+     */
+    public long getUniqueTimestamp(int index) {
+        return uniqueTimestamps[index];
+    }
+
+    /**
+     * @param  variable index of a multi-bit variable that is not wide
+     * @param  change   index of the change
+     * @return          unknown plane of the variable's value after the change
+     *                  (see {@link BitVector}), or 0 if all of its bits are
+     *                  known, or it's {@link MultibitChangeEntry#UNDEFINED}
+     */
+    public int getUnknownBits(int variable, int change) {
+        return unknowns[variable] == null ? 0 : unknowns[variable][change];
+    }
+
+    /**
+     * @param  variable index of a multi-bit variable that is not wide
+     * @param  change   index of the change
+     * @return          value of the variable after the change, or
+     *                  {@link MultibitChangeEntry#UNDEFINED}. If some bits of
+     *                  the value are unknown, this is its value plane
+     * @see             #getUnknownBits(int, int)
+     */
+    public int getValue(int variable, int change) {
+        return values[variable][change];
+    }
+
+    public VariableDefinition getVariable(int variable) {
+        return variables[variable];
+    }
+
+    public int getVariableCount() {
+        return variables.length;
+    }
+
+    /**
+     * @return an unmodifiable list of all variables, in order of their indices
+     */
+    public List<VariableDefinition> getVariables() {
+        return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    /**
+     * @param  variable index of a multi-bit variable
+     * @param  change   index of the change
+     * @return          value of the variable after the change
+     */
+    public BitVector getVector(int variable, int change) {
+        int width = variables[variable].getBitCount();
+        if (vectors[variable] == null) {
+            int value = values[variable][change];
+            if (value == MultibitChangeEntry.UNDEFINED) return BitVector.undefined(width);
+            return BitVector.wrap(width, new long[] { value }, new long[] { getUnknownBits(variable, change) });
+        }
+        int words = BitVector.getWordCount(width);
+        int offset = change * words * 2;
+        return BitVector.wrap(variables[variable].getBitCount(),
+                Arrays.copyOfRange(vectors[variable], offset, offset + words),
+                Arrays.copyOfRange(vectors[variable], offset + words, offset + words * 2));
+    }
+
+    /**
+     * @param  identifier variable identifier
+     * @return            index of the variable, or -1 if it's not defined
+     */
+    public int indexOf(String identifier) {
+        Integer index = indices.get(identifier);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param  variable index of the variable
+     * @return          <code>true</code> if the variable is a 1-bit variable
+     */
+    public boolean isBinary(int variable) {
+        return states[variable] != null;
+    }
+
+    /**
+     * @param  variable index of the variable
+     * @return          <code>true</code> if the variable is a wide variable
+     * @see             VariableDefinition#isWide()
+     */
+    public boolean isWide(int variable) {
+        return vectors[variable] != null;
+    }
+
+    /**
+     * Creates a change entry object for the given change.
+     *
+     * @param  variable index of the variable
+     * @param  change   index of the change
+     * @return          a new change entry
+     */
+    public ChangeEntry<?> toChangeEntry(int variable, int change) {
+        if (isBinary(variable)) return BinaryChangeEntry.of(variables[variable], getState(variable, change));
+        if (isWide(variable) || getUnknownBits(variable, change) != 0)
+            return new VectorChangeEntry(variables[variable], getVector(variable, change));
+        return MultibitChangeEntry.of(variables[variable], getValue(variable, change));
+    }
+
+    @Override
+    public String toString() {
+        int changes = 0;
+        for (long[] column : timestamps) changes += column.length;
+        return "ValueChangeColumns [variables=" + variables.length + ", timestamps=" + uniqueTimestamps.length
+                + ", changes=" + changes + "]";
+    }
+
+    /**
+     * Converts the columns back into the map form used by
+     * {@link VCD#getValueChanges()}
+     *
+     * @return a new map of value changes, ordered by timestamp
+     */
+    public Map<Long, List<ChangeEntry<?>>> toValueChanges() {
+        Map<Long, List<ChangeEntry<?>>> changes = new LinkedHashMap<>();
+        Cursor cursor = cursor();
+        for (long timestamp : uniqueTimestamps) {
+            List<ChangeEntry<?>> entries = new ArrayList<>();
+            while (cursor.hasNext() && cursor.peekTimestamp() == timestamp) {
+                cursor.next();
+                entries.add(toChangeEntry(cursor.variable, cursor.change));
+            }
+            changes.put(timestamp, entries);
+        }
+        return changes;
+    }
+
+    /**
+     * Converts value changes stored in a map to columns.
+     *
+     * @param  valueChanges             map of value changes, as used by
+     *                                  {@link VCD}
+     * @param  variableDefinitions      variables referenced by the changes
+     * @return                          new columns
+     * @throws IllegalArgumentException if any change references an undefined
+     *                                  variable
+     */
+    public static ValueChangeColumns of(Map<Long, List<ChangeEntry<?>>> valueChanges,
+            Map<String, VariableDefinition> variableDefinitions) {
+        Objects.requireNonNull(valueChanges);
+        Objects.requireNonNull(variableDefinitions);
+        Builder builder = new Builder();
+        for (VariableDefinition variable : variableDefinitions.values()) builder.addVariable(variable);
+        List<Long> keys = new ArrayList<>(valueChanges.keySet());
+        Collections.sort(keys);
+        for (Long timestamp : keys) {
+            builder.addTimestamp(timestamp);
+            for (ChangeEntry<?> entry : valueChanges.get(timestamp)) {
+                int index = builder.indexOf(entry.getVariable().getIdentifier());
+                if (index < 0) throw new IllegalArgumentException(
+                        String.format("Variable \"%s\" is undefined", entry.getVariable().getIdentifier()));
+                builder.addChange(index, timestamp, entry);
+            }
+        }
+        return builder.build();
+    }
+
+    private static byte[] ensureCapacity(byte[] array, int capacity) {
+        return array.length >= capacity ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return array.length >= capacity ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    private static long[] ensureCapacity(long[] array, int capacity) {
+        return array.length >= capacity ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+}
@@ -14,8 +14,16 @@ public class VariableDefinition {
         WIRE
     }
 
-    private final byte bitCount;
+    /**
+     * Shared entries of this variable, see {@link BinaryChangeEntry#of(VariableDefinition, State)}
+     */
+    BinaryChangeEntry[] binaryEntries;
+    private final int bitCount;
     private final String id;
+    /**
+     * Shared entries of this variable, see {@link MultibitChangeEntry#of(VariableDefinition, int)}
+     */
+    MultibitChangeEntry[] multibitEntries;
     private final String name;
     private final VarType type;
 
@@ -41,12 +49,12 @@ public class VariableDefinition {
         Objects.requireNonNull(id);
         if (bitCount < 1) throw new IllegalArgumentException("bitCount < 1");
         this.type = type;
-        this.bitCount = (byte) bitCount;
+        this.bitCount = bitCount;
         this.name = name;
         this.id = id;
     }
 
-    public byte getBitCount() {
+    public int getBitCount() {
         return bitCount;
     }
 
@@ -62,6 +70,15 @@ public class VariableDefinition {
         return type;
     }
 
+    /**
+     * @return <code>true</code> if the variable is wider than
+     *         {@link MultibitChangeEntry#MAX_BIT_COUNT} bits, so its values are
+     *         stored as {@link BitVector} objects
+     */
+    public boolean isWide() {
+        return bitCount > MultibitChangeEntry.MAX_BIT_COUNT;
+    }
+
     @Override
     public String toString() {
         return "VCDVariableDef [type=" + type + ", bitCount=" + bitCount + ", name=" + name + "]";
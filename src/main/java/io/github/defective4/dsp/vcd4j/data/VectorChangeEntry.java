@@ -0,0 +1,37 @@
+package io.github.defective4.dsp.vcd4j.data;
+
+/**
+ * Represents a change of a multi-bit variable's state to a {@link BitVector}.
+ * <p>
+ * Unlike {@link MultibitChangeEntry}, vector entries aren't limited to
+ * variables of up to {@value MultibitChangeEntry#MAX_BIT_COUNT} bits, and can
+ * hold values with any combination of x and z bits. Parsers use them for wider
+ * variables, and for values of other multi-bit variables that have some, but
+ * not all, bits unknown.
+ * </p>
+ */
+public final class VectorChangeEntry extends ChangeEntry<BitVector> {
+
+    /**
+     * Constructs a new vector change entry
+     *
+     * @param  variable                 associated variable
+     * @param  value                    associated non-null value
+     *
+     * @throws IllegalArgumentException if the vector's width is not equal to
+     *                                  {@link VariableDefinition#getBitCount()}
+     */
+    public VectorChangeEntry(VariableDefinition variable, BitVector value) {
+        super(variable, value);
+        if (value.getWidth() != variable.getBitCount())
+            throw new IllegalArgumentException("Vector width must be equal to the defined variable's bitCount");
+    }
+
+    /**
+     * @return <code>true</code> if all bits of the value are x
+     */
+    @Override
+    public boolean isUndefined() {
+        return getValue().isUndefined();
+    }
+}
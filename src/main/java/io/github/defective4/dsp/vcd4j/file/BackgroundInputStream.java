@@ -0,0 +1,133 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a source stream ahead on a background thread.<br>
+ * The source is read into a few reusable buffers, which are handed over to the
+ * reading thread through a bounded queue, so a slow source (such as a
+ * decompressor) and a slow consumer (such as a parser) work concurrently.<br>
+ * The source is closed by the background thread once it's exhausted, failed,
+ * or this stream was closed.
+ */
+final class BackgroundInputStream extends InputStream {
+    private static final class Chunk {
+        private final byte[] data;
+        private int length;
+
+        private Chunk(int capacity) {
+            data = new byte[capacity];
+        }
+    }
+
+    private static final int CHUNK_COUNT = 4;
+    private static final Chunk END = new Chunk(0);
+
+    private final int chunkSize;
+    private volatile boolean closed;
+    private Chunk current;
+    private volatile Throwable failure;
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNK_COUNT);
+    private int position;
+    private final BlockingQueue<Chunk> ready = new ArrayBlockingQueue<>(CHUNK_COUNT + 1);
+    private final InputStream source;
+    private final Thread thread;
+
+    BackgroundInputStream(InputStream source, int chunkSize) {
+        this.source = Objects.requireNonNull(source);
+        this.chunkSize = chunkSize;
+        thread = new Thread(this::pump, "vcd4j decompressor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public int available() throws IOException {
+        Chunk chunk = current;
+        return chunk == null ? 0 : chunk.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        ready.clear();
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        Chunk chunk = fill();
+        return chunk == null ? -1 : chunk.data[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) return 0;
+        Chunk chunk = fill();
+        if (chunk == null) return -1;
+        int count = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk.data, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * @return a chunk with unread data, or <code>null</code> at the end of the
+     *         source
+     */
+    private Chunk fill() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        if (current == END) return null;
+        if (current != null) {
+            if (position < current.length) return current;
+            free.offer(current);
+        }
+        try {
+            current = ready.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for data");
+        }
+        position = 0;
+        if (current != END) return current;
+        Throwable failure = this.failure;
+        if (failure instanceof IOException io) throw new IOException(io.getMessage(), io);
+        if (failure != null) throw new IOException(failure);
+        return null;
+    }
+
+    private void pump() {
+        int allocated = 0;
+        try (source) {
+            while (!closed) {
+                Chunk chunk = free.poll();
+                if (chunk == null) {
+                    if (allocated < CHUNK_COUNT) {
+                        chunk = new Chunk(chunkSize);
+                        allocated++;
+                    } else chunk = free.take();
+                }
+                chunk.length = source.readNBytes(chunk.data, 0, chunk.data.length);
+                if (chunk.length == 0) break;
+                ready.put(chunk);
+            }
+        } catch (InterruptedException e) {
+        } catch (Throwable e) {
+            if (!closed) failure = e;
+        } finally {
+            if (!closed) ready.offer(END);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Constants and primitive encodings of the binary VCD format, shared by
+ * {@link BinaryVCDWriter} and {@link BinaryVCDParser}.
+ * <p>
+ * A file starts with the {@link #MAGIC} bytes and a {@link #VERSION} byte,
+ * followed by the header: date, version and comment strings, scope type and
+ * name, time scale unit and resolution, block size and variable definitions
+ * (identifier, type, bit count and name of each variable).
+ * </p>
+ * <p>
+ * The header is followed by blocks of at most block size timestamps. A block
+ * starts with the number of its timestamps and its length in bytes, so readers
+ * can skip it without decoding. Its payload consists of:
+ * </p>
+ * <ol>
+ * <li>the timestamps, the first one as a zigzag-encoded delta from the last
+ * timestamp of the previous block, and the rest as deltas from their
+ * predecessors,</li>
+ * <li>the number of variables changing in the block,</li>
+ * <li>a stream per changing variable: delta of its index from the previous
+ * variable's index minus one, number of changes, delta of each change's
+ * timestamp slot from the previous change's slot, and the values - 1-bit
+ * states packed four per byte, or zigzag-encoded deltas of multi-bit values
+ * from the variable's previous value in the block, starting from
+ * {@link io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry#UNDEFINED}.
+ * Multi-bit values with unknown bits are combined with their unknown plane by
+ * {@link #encodeMultibit(int, int)} first.
+ * Values of wide variables are written word by word, as XOR of each word of
+ * the value and unknown planes with the same word of the variable's previous
+ * value in the block, starting from all zero planes. Version 1 files store
+ * values of all multi-bit variables as integers.</li>
+ * </ol>
+ * The last block is followed by a zero timestamp count. All integers except the
+ * magic and version are unsigned LEB128 variable-length integers, and strings
+ * are their UTF-8 length plus one (0 for <code>null</code>) followed by the
+ * bytes.
+ */
+final class BinaryVCDFormat {
+    /**
+     * Decodes primitives from a stream through an internal buffer
+     */
+    static final class Input {
+        private final byte[] buffer = new byte[1 << 16];
+        private int limit;
+        private int position;
+        private long read;
+        private final InputStream stream;
+
+        Input(InputStream stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * @return number of bytes consumed so far
+         */
+        long getPosition() {
+            return read + position;
+        }
+
+        int readByte() throws IOException {
+            if (position == limit && !fill()) throw new EOFException("Unexpected end of binary VCD data");
+            return buffer[position++] & 0xff;
+        }
+
+        void readFully(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (position == limit && !fill()) throw new EOFException("Unexpected end of binary VCD data");
+                int length = Math.min(bytes.length - offset, limit - position);
+                System.arraycopy(buffer, position, bytes, offset, length);
+                position += length;
+                offset += length;
+            }
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt();
+            if (length == 0) return null;
+            byte[] bytes = new byte[length - 1];
+            readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) throw new IOException("Integer out of range: " + value);
+            return (int) value;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if (b < 0x80) return value;
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+
+        private boolean fill() throws IOException {
+            read += limit;
+            position = limit = 0;
+            int count;
+            do count = stream.read(buffer); while (count == 0);
+            if (count < 0) return false;
+            limit = count;
+            return true;
+        }
+    }
+
+    /**
+     * Growable byte buffer encoding primitives
+     */
+    static final class Output {
+        private byte[] data = new byte[1 << 12];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeByte(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            if (size + bytes.length > data.length) data = Arrays.copyOf(data, Math.max(size + bytes.length, size * 2));
+            System.arraycopy(bytes, 0, data, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeTo(OutputStream stream) throws IOException {
+            stream.write(data, 0, size);
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xffffffffL);
+        }
+
+        void writeVarLong(long value) {
+            if (size + 10 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            while ((value & ~0x7fL) != 0) {
+                data[size++] = (byte) (value & 0x7f | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+
+    static final int DEFAULT_BLOCK_SIZE = 4096;
+    static final byte[] MAGIC = { 'V', 'C', 'D', 'B' };
+    static final int VERSION = 2;
+
+    private BinaryVCDFormat() {}
+
+    /**
+     * @param  code a combined multi-bit value
+     * @return      unknown plane of the value
+     * @see         #encodeMultibit(int, int)
+     */
+    static int decodeUnknownBits(long code) {
+        return code < 0 ? 0 : (int) (code >>> 31);
+    }
+
+    /**
+     * @param  code a combined multi-bit value
+     * @return      value, or value plane of the value
+     * @see         #encodeMultibit(int, int)
+     */
+    static int decodeValue(long code) {
+        return code < 0 ? (int) code : (int) (code & Integer.MAX_VALUE);
+    }
+
+    static long decodeZigZag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Combines a multi-bit value that is not wide with its unknown plane.<br>
+     * Values with no unknown bits, including
+     * {@link io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry#UNDEFINED},
+     * are encoded as themselves.
+     *
+     * @param  value       value, or value plane of the value
+     * @param  unknownBits unknown plane of the value
+     * @return             the combined value
+     */
+    static long encodeMultibit(int value, int unknownBits) {
+        return (long) unknownBits << 31 | value;
+    }
+
+    static long encodeZigZag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+}
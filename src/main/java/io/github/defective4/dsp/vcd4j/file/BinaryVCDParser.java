@@ -0,0 +1,187 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+import io.github.defective4.dsp.vcd4j.data.BitVector;
+import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.Scope;
+import io.github.defective4.dsp.vcd4j.data.State;
+import io.github.defective4.dsp.vcd4j.data.TimeScale;
+import io.github.defective4.dsp.vcd4j.data.TimeScale.TimeScaleUnit;
+import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.data.ValueChangeColumns;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.file.BinaryVCDFormat.Input;
+
+/**
+ * Provides methods to parse files written by {@link BinaryVCDWriter} into
+ * {@link VCD} objects.
+ * <p>
+ * Value changes are decoded straight into {@link ValueChangeColumns}, without
+ * creating a {@link io.github.defective4.dsp.vcd4j.data.ChangeEntry} per
+ * change, so the returned VCD is always columnar.
+ * </p>
+ */
+public class BinaryVCDParser {
+    private static final State[] STATES = State.values();
+
+    private BinaryVCDParser() {}
+
+    /**
+     * Checks if the file, decompressed if necessary, starts with the binary VCD
+     * signature
+     *
+     * @param  file        the file to check
+     * @return             <code>true</code> if the file is a binary VCD file
+     * @throws IOException if an I/O error occurs
+     */
+    public static boolean isBinaryVCD(File file) throws IOException {
+        Objects.requireNonNull(file);
+        try (InputStream stream = CompressionCodecs.openInput(file, false)) {
+            byte[] magic = stream.readNBytes(BinaryVCDFormat.MAGIC.length);
+            return Arrays.equals(magic, BinaryVCDFormat.MAGIC);
+        }
+    }
+
+    /**
+     * Parses a binary VCD file, decompressing it on a background thread if it's
+     * compressed with one of {@link CompressionCodecs#getCodecs()}
+     *
+     * @param  file        the file to parse
+     * @return             parsed, columnar VCD
+     * @throws IOException if an I/O error occurs or the data is malformed
+     */
+    public static VCD parse(File file) throws IOException {
+        Objects.requireNonNull(file);
+        return parse(CompressionCodecs.openInput(file, true));
+    }
+
+    /**
+     * Parses binary VCD data and closes the stream
+     *
+     * @param  stream      source of binary VCD data
+     * @return             parsed, columnar VCD
+     * @throws IOException if an I/O error occurs or the data is malformed
+     */
+    public static VCD parse(InputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        try (stream) {
+            Input in = new Input(stream);
+            for (byte b : BinaryVCDFormat.MAGIC)
+                if (in.readByte() != b) throw new IOException("Not a binary VCD file");
+            int version = in.readByte();
+            if (version < 1 || version > BinaryVCDFormat.VERSION)
+                throw new IOException("Unsupported binary VCD version " + version);
+            String date = in.readString();
+            String vcdVersion = in.readString();
+            String comment = in.readString();
+            Scope scope;
+            TimeScale timeScale;
+            ValueChangeColumns.Builder builder = new ValueChangeColumns.Builder();
+            try {
+                scope = new Scope(Scope.Type.valueOf(in.readString()), in.readString());
+                timeScale = new TimeScale(TimeScaleUnit.valueOf(in.readString()), in.readVarLong());
+                in.readVarInt(); // Block size
+                int variableCount = in.readVarInt();
+                for (int i = 0; i < variableCount; i++) {
+                    String id = in.readString();
+                    VariableDefinition.VarType type = VariableDefinition.VarType.valueOf(in.readString());
+                    int bitCount = in.readVarInt();
+                    builder.addVariable(new VariableDefinition(id, type, bitCount, in.readString()));
+                }
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IOException("Malformed binary VCD header", e);
+            }
+            readBlocks(in, builder, version);
+            return new VCD(date, vcdVersion, comment, scope, timeScale, builder.build());
+        }
+    }
+
+    public static VCD parse(String file) throws IOException {
+        return parse(new File(file));
+    }
+
+    private static void readBlocks(Input in, ValueChangeColumns.Builder builder, int version) throws IOException {
+        long[] timestamps = new long[BinaryVCDFormat.DEFAULT_BLOCK_SIZE];
+        int[] slots = new int[64];
+        long previous = 0;
+        while (true) {
+            int count = in.readVarInt();
+            if (count == 0) return;
+            int length = in.readVarInt();
+            long start = in.getPosition();
+            if (timestamps.length < count) timestamps = new long[count];
+            long timestamp = previous + BinaryVCDFormat.decodeZigZag(in.readVarLong());
+            timestamps[0] = timestamp;
+            builder.addTimestamp(timestamp);
+            for (int i = 1; i < count; i++) {
+                timestamp += in.readVarLong();
+                timestamps[i] = timestamp;
+                builder.addTimestamp(timestamp);
+            }
+            previous = timestamp;
+
+            int changing = in.readVarInt();
+            int variable = -1;
+            try {
+                for (int i = 0; i < changing; i++) {
+                    variable += in.readVarInt() + 1;
+                    if (variable < 0 || variable >= builder.getVariableCount())
+                        throw new IOException("Variable index out of range: " + variable);
+                    int changes = in.readVarInt();
+                    if (slots.length < changes) slots = new int[Math.max(changes, slots.length * 2)];
+                    int slot = 0;
+                    for (int change = 0; change < changes; change++) {
+                        slot += in.readVarInt();
+                        if (slot >= count) throw new IOException("Timestamp slot out of range: " + slot);
+                        slots[change] = slot;
+                    }
+                    if (builder.isBinary(variable)) {
+                        int packed = 0;
+                        for (int change = 0; change < changes; change++) {
+                            int shift = (change & 3) * 2;
+                            if (shift == 0) packed = in.readByte();
+                            builder.addBinaryChange(variable, timestamps[slots[change]], STATES[packed >> shift & 3]);
+                        }
+                    } else if (builder.isWide(variable) && version > 1) {
+                        int width = builder.getVariable(variable).getBitCount();
+                        int words = BitVector.getWordCount(width);
+                        long[] values = new long[words];
+                        long[] unknowns = new long[words];
+                        for (int change = 0; change < changes; change++) {
+                            for (int word = 0; word < words; word++) {
+                                values[word] ^= in.readVarLong();
+                                unknowns[word] ^= in.readVarLong();
+                            }
+                            builder.addVectorChange(variable, timestamps[slots[change]],
+                                    new BitVector(width, values, unknowns));
+                        }
+                    } else {
+                        long value = MultibitChangeEntry.UNDEFINED;
+                        for (int change = 0; change < changes; change++) {
+                            value += BinaryVCDFormat.decodeZigZag(in.readVarLong());
+                            if (value == (int) value) {
+                                builder.addMultibitChange(variable, timestamps[slots[change]], (int) value);
+                                continue;
+                            }
+                            if (value < 0 || value >>> 62 != 0)
+                                throw new IOException("Multi-bit value out of range: " + value);
+                            builder.addVectorChange(variable, timestamps[slots[change]],
+                                    new BitVector(builder.getVariable(variable).getBitCount(),
+                                            new long[] { BinaryVCDFormat.decodeValue(value) },
+                                            new long[] { BinaryVCDFormat.decodeUnknownBits(value) }));
+                        }
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid value change in block ending at timestamp " + timestamp, e);
+            }
+            if (in.getPosition() - start != length)
+                throw new IOException("Block length mismatch at timestamp " + timestamp);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+import io.github.defective4.dsp.vcd4j.data.BitVector;
+import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.data.ValueChangeColumns;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.file.BinaryVCDFormat.Output;
+
+/**
+ * Provides methods to write {@link VCD} objects in the compact binary VCD
+ * format.
+ * <p>
+ * Value changes are grouped into blocks of consecutive timestamps. Within a
+ * block timestamps are delta-encoded, and changes are stored in a separate
+ * stream per variable, with 1-bit states packed four per byte and multi-bit
+ * values delta-encoded. Such files are several times smaller than textual VCD
+ * files and can be read back with {@link BinaryVCDParser}.
+ * </p>
+ * Changes are written from {@link VCD#getColumns()}, so changes stored under
+ * the same timestamp are not guaranteed to keep their relative order.
+ */
+public class BinaryVCDWriter {
+    /**
+     * Default maximum number of timestamps in a single block
+     */
+    public static final int DEFAULT_BLOCK_SIZE = BinaryVCDFormat.DEFAULT_BLOCK_SIZE;
+
+    private BinaryVCDWriter() {}
+
+    /**
+     * Writes the VCD to a file, compressing it if the file name ends with an
+     * extension of one of {@link CompressionCodecs#getCodecs()}
+     *
+     * @param  vcd         VCD to write
+     * @param  file        the file to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(VCD vcd, File file) throws IOException {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(vcd);
+        write(vcd, CompressionCodecs.openOutput(file));
+    }
+
+    /**
+     * Writes the VCD and closes the stream
+     *
+     * @param  vcd         VCD to write
+     * @param  stream      destination of binary VCD data
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(VCD vcd, OutputStream stream) throws IOException {
+        write(vcd, stream, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Writes the VCD and closes the stream.<br>
+     * Larger blocks compress slightly better, while smaller ones make skipping
+     * parts of the file cheaper.
+     *
+     * @param  vcd                      VCD to write
+     * @param  stream                   destination of binary VCD data
+     * @param  blockSize                maximum number of timestamps in a single
+     *                                  block
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if blockSize is less than 1
+     */
+    public static void write(VCD vcd, OutputStream stream, int blockSize) throws IOException {
+        Objects.requireNonNull(vcd);
+        Objects.requireNonNull(stream);
+        if (blockSize < 1) throw new IllegalArgumentException("blockSize < 1");
+        try (OutputStream out = stream instanceof BufferedOutputStream ? stream
+                : new BufferedOutputStream(stream, 1 << 16)) {
+            ValueChangeColumns columns = vcd.getColumns();
+            Output header = new Output();
+            writeHeader(vcd, columns, blockSize, header);
+            header.writeTo(out);
+            writeBlocks(columns, blockSize, out);
+        }
+    }
+
+    public static void write(VCD vcd, String file) throws IOException {
+        write(vcd, new File(file));
+    }
+
+    private static void writeBlocks(ValueChangeColumns columns, int blockSize, OutputStream out)
+            throws IOException {
+        int variableCount = columns.getVariableCount();
+        int[] positions = new int[variableCount];
+        int[] ends = new int[variableCount];
+        Output prefix = new Output();
+        Output block = new Output();
+        long previous = 0;
+        int total = columns.getTimestampCount();
+        for (int start = 0; start < total; start += blockSize) {
+            int end = Math.min(start + blockSize, total);
+            long last = columns.getUniqueTimestamp(end - 1);
+            block.reset();
+            block.writeVarLong(BinaryVCDFormat.encodeZigZag(columns.getUniqueTimestamp(start) - previous));
+            for (int i = start + 1; i < end; i++)
+                block.writeVarLong(columns.getUniqueTimestamp(i) - columns.getUniqueTimestamp(i - 1));
+            previous = last;
+
+            int changing = 0;
+            for (int variable = 0; variable < variableCount; variable++) {
+                int change = positions[variable];
+                int count = columns.getChangeCount(variable);
+                while (change < count && columns.getTimestamp(variable, change) <= last) change++;
+                ends[variable] = change;
+                if (change > positions[variable]) changing++;
+            }
+            block.writeVarInt(changing);
+
+            int previousVariable = -1;
+            for (int variable = 0; variable < variableCount; variable++) {
+                int from = positions[variable], to = ends[variable];
+                if (from == to) continue;
+                block.writeVarInt(variable - previousVariable - 1);
+                block.writeVarInt(to - from);
+                previousVariable = variable;
+                int slot = start, previousSlot = start;
+                for (int change = from; change < to; change++) {
+                    long timestamp = columns.getTimestamp(variable, change);
+                    while (columns.getUniqueTimestamp(slot) < timestamp) slot++;
+                    block.writeVarInt(slot - previousSlot);
+                    previousSlot = slot;
+                }
+                if (columns.isBinary(variable)) {
+                    int packed = 0;
+                    for (int change = from; change < to; change++) {
+                        int shift = (change - from & 3) * 2;
+                        packed |= columns.getState(variable, change).ordinal() << shift;
+                        if (shift == 6 || change == to - 1) {
+                            block.writeByte(packed);
+                            packed = 0;
+                        }
+                    }
+                } else if (columns.isWide(variable)) {
+                    int words = BitVector.getWordCount(columns.getVariable(variable).getBitCount());
+                    long[] previousWords = new long[words * 2];
+                    for (int change = from; change < to; change++) {
+                        BitVector value = columns.getVector(variable, change);
+                        for (int i = 0; i < words; i++) {
+                            block.writeVarLong(value.getValueWord(i) ^ previousWords[i]);
+                            block.writeVarLong(value.getUnknownWord(i) ^ previousWords[words + i]);
+                            previousWords[i] = value.getValueWord(i);
+                            previousWords[words + i] = value.getUnknownWord(i);
+                        }
+                    }
+                } else {
+                    long previousValue = MultibitChangeEntry.UNDEFINED;
+                    for (int change = from; change < to; change++) {
+                        long value = BinaryVCDFormat.encodeMultibit(columns.getValue(variable, change),
+                                columns.getUnknownBits(variable, change));
+                        block.writeVarLong(BinaryVCDFormat.encodeZigZag(value - previousValue));
+                        previousValue = value;
+                    }
+                }
+                positions[variable] = to;
+            }
+
+            prefix.reset();
+            prefix.writeVarInt(end - start);
+            prefix.writeVarInt(block.size());
+            prefix.writeTo(out);
+            block.writeTo(out);
+        }
+        prefix.reset();
+        prefix.writeVarInt(0);
+        prefix.writeTo(out);
+    }
+
+    private static void writeHeader(VCD vcd, ValueChangeColumns columns, int blockSize, Output header) {
+        for (byte b : BinaryVCDFormat.MAGIC) header.writeByte(b);
+        header.writeByte(BinaryVCDFormat.VERSION);
+        header.writeString(vcd.getDate());
+        header.writeString(vcd.getVersion());
+        header.writeString(vcd.getComment());
+        header.writeString(vcd.getScope().getType().name());
+        header.writeString(vcd.getScope().getName());
+        header.writeString(vcd.getTimeScale().getUnit().name());
+        header.writeVarLong(vcd.getTimeScale().getResolution());
+        header.writeVarInt(blockSize);
+        header.writeVarInt(columns.getVariableCount());
+        for (VariableDefinition variable : columns.getVariables()) {
+            header.writeString(variable.getIdentifier());
+            header.writeString(variable.getType().name());
+            header.writeVarInt(variable.getBitCount());
+            header.writeString(variable.getName());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * A compression format that file-based entry points, such as
+ * {@link VCDParser#parse(java.io.File)} and
+ * {@link VCDWriter#write(io.github.defective4.dsp.vcd4j.data.VCD, java.io.File)},
+ * can read and write transparently.
+ * <p>
+ * Gzip is always supported through {@link CompressionCodecs#GZIP}. Additional
+ * codecs, for example wrapping a zstd or LZ4 library, are discovered with
+ * {@link ServiceLoader}, by listing their implementation classes in a
+ * <code>META-INF/services/io.github.defective4.dsp.vcd4j.file.CompressionCodec</code>
+ * resource.
+ * </p>
+ * Compressed input is recognized by its leading bytes, and compressed output by
+ * the extension of the file name.
+ *
+ * @see CompressionCodecs
+ */
+public interface CompressionCodec {
+    /**
+     * Wraps a stream, so data written to the returned stream is compressed.<br>
+     * Closing the returned stream must close the supplied one.
+     *
+     * @param  stream      destination of compressed data
+     * @return             stream accepting uncompressed data
+     * @throws IOException if an I/O error occurs
+     */
+    OutputStream compress(OutputStream stream) throws IOException;
+
+    /**
+     * Wraps a stream, so data read from the returned stream is decompressed.<br>
+     * Closing the returned stream must close the supplied one.
+     *
+     * @param  stream      source of compressed data
+     * @return             stream of uncompressed data
+     * @throws IOException if an I/O error occurs or the data is malformed
+     */
+    InputStream decompress(InputStream stream) throws IOException;
+
+    /**
+     * @return file name extensions of this format, including the leading dot,
+     *         for example <code>.gz</code>
+     */
+    List<String> getExtensions();
+
+    String getName();
+
+    /**
+     * Checks if data starts with the signature of this format
+     *
+     * @param  header first bytes of the data
+     * @param  length number of valid bytes in header. It can be less than the
+     *                length of the signature if the data is that short
+     * @return        <code>true</code> if the data is compressed with this format
+     */
+    boolean matches(byte[] header, int length);
+}
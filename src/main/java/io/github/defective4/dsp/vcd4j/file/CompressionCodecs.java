@@ -0,0 +1,188 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Provides access to available {@link CompressionCodec}s, and opens files with
+ * transparent compression.
+ * <p>
+ * Decompression can run on a background thread, which decompresses ahead into a
+ * small bounded queue of buffers, so it overlaps with parsing.
+ * </p>
+ */
+public final class CompressionCodecs {
+    private static final class Gzip implements CompressionCodec {
+        @Override
+        public OutputStream compress(OutputStream stream) throws IOException {
+            return new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+
+        @Override
+        public InputStream decompress(InputStream stream) throws IOException {
+            return new GZIPInputStream(stream, BUFFER_SIZE);
+        }
+
+        @Override
+        public List<String> getExtensions() {
+            return List.of(".gz", ".gzip");
+        }
+
+        @Override
+        public String getName() {
+            return "gzip";
+        }
+
+        @Override
+        public boolean matches(byte[] header, int length) {
+            return length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b;
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+    }
+
+    private static final class Holder {
+        private static final List<CompressionCodec> CODECS;
+
+        static {
+            List<CompressionCodec> codecs = new ArrayList<>();
+            codecs.add(GZIP);
+            for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) codecs.add(codec);
+            CODECS = Collections.unmodifiableList(codecs);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Gzip codec backed by {@link GZIPInputStream} and {@link GZIPOutputStream}
+     */
+    public static final CompressionCodec GZIP = new Gzip();
+
+    private static final int HEADER_SIZE = 16;
+
+    private CompressionCodecs() {}
+
+    /**
+     * Detects compression of a file from its leading bytes
+     *
+     * @param  file        the file to check
+     * @return             codec the file is compressed with, or <code>null</code>
+     *                     if it's not compressed with any available codec
+     * @throws IOException if an I/O error occurs
+     */
+    public static CompressionCodec detect(File file) throws IOException {
+        Objects.requireNonNull(file);
+        try (InputStream stream = new FileInputStream(file)) {
+            byte[] header = stream.readNBytes(HEADER_SIZE);
+            return detect(header, header.length);
+        }
+    }
+
+    /**
+     * @param  header first bytes of the data
+     * @param  length number of valid bytes in header
+     * @return        codec matching the data, or <code>null</code> if there is
+     *                none
+     */
+    public static CompressionCodec detect(byte[] header, int length) {
+        Objects.requireNonNull(header);
+        for (CompressionCodec codec : getCodecs()) if (codec.matches(header, length)) return codec;
+        return null;
+    }
+
+    /**
+     * @param  fileName name of a file
+     * @return          codec whose extension the name ends with, or
+     *                  <code>null</code> if there is none
+     */
+    public static CompressionCodec forFileName(String fileName) {
+        Objects.requireNonNull(fileName);
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        for (CompressionCodec codec : getCodecs())
+            for (String extension : codec.getExtensions())
+                if (lower.endsWith(extension.toLowerCase(Locale.ROOT))) return codec;
+        return null;
+    }
+
+    /**
+     * @return an unmodifiable list of available codecs, starting with
+     *         {@link #GZIP}, followed by codecs found with {@link ServiceLoader}
+     */
+    public static List<CompressionCodec> getCodecs() {
+        return Holder.CODECS;
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if its leading bytes match an
+     * available codec. Uncompressed files are read as is.
+     *
+     * @param  file        the file to read
+     * @param  background  whether compressed data should be decompressed on a
+     *                     background thread
+     * @return             stream of uncompressed data
+     * @throws IOException if an I/O error occurs
+     */
+    public static InputStream openInput(File file, boolean background) throws IOException {
+        Objects.requireNonNull(file);
+        InputStream stream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            stream.mark(HEADER_SIZE);
+            byte[] header = stream.readNBytes(HEADER_SIZE);
+            stream.reset();
+            CompressionCodec codec = detect(header, header.length);
+            if (codec == null) return stream;
+            InputStream decompressed = codec.decompress(stream);
+            return background ? new BackgroundInputStream(decompressed, BUFFER_SIZE) : decompressed;
+        } catch (IOException | RuntimeException e) {
+            try {
+                stream.close();
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a file for writing, compressing it with the codec matching the file
+     * name's extension. Other files are written as is.
+     *
+     * @param  file        the file to write to
+     * @return             stream accepting uncompressed data
+     * @throws IOException if an I/O error occurs
+     */
+    public static OutputStream openOutput(File file) throws IOException {
+        Objects.requireNonNull(file);
+        CompressionCodec codec = forFileName(file.getName());
+        OutputStream stream = new FileOutputStream(file);
+        if (codec == null) return stream;
+        try {
+            return codec.compress(new BufferedOutputStream(stream, BUFFER_SIZE));
+        } catch (IOException | RuntimeException e) {
+            try {
+                stream.close();
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition.VarType;
+
+/**
+ * Open-addressing hash table mapping raw identifier bytes to variable
+ * definitions.<br>
+ * Lookups read the identifier straight from a buffer, so resolving a variable
+ * doesn't require creating a {@link String}.<br>
+ * Variables rejected by a filter are mapped to {@link #SKIP}, so their changes
+ * can be recognized and skipped without decoding their values.
+ */
+final class IdentifierTable {
+    /**
+     * Placeholder definition of variables whose changes should be skipped
+     */
+    static final VariableDefinition SKIP = new VariableDefinition("", VarType.WIRE, 1, "skip");
+
+    private final byte[][] keys;
+    private final int mask;
+    private final VariableDefinition[] values;
+
+    IdentifierTable(Collection<VariableDefinition> variables) {
+        this(variables, null);
+    }
+
+    /**
+     * @param variables definitions of all variables
+     * @param filter    predicate selecting variables whose changes should be
+     *                  decoded, or <code>null</code> to decode all of them
+     */
+    IdentifierTable(Collection<VariableDefinition> variables, Predicate<VariableDefinition> filter) {
+        int capacity = Integer.highestOneBit(Math.max(variables.size(), 1) * 4 - 1) << 1;
+        keys = new byte[capacity][];
+        values = new VariableDefinition[capacity];
+        mask = capacity - 1;
+        for (VariableDefinition variable : variables) {
+            byte[] key = variable.getIdentifier().getBytes(StandardCharsets.UTF_8);
+            int slot = hash(key) & mask;
+            while (keys[slot] != null) slot = slot + 1 & mask;
+            keys[slot] = key;
+            values[slot] = filter == null || filter.test(variable) ? variable : SKIP;
+        }
+    }
+
+    /**
+     * @param  buffer buffer containing the identifier
+     * @param  from   index of the first byte of the identifier
+     * @param  to     index after the last byte of the identifier
+     * @return        variable bound to the identifier, {@link #SKIP} if it was
+     *                rejected by the filter, or <code>null</code>
+     */
+    VariableDefinition get(ByteBuffer buffer, int from, int to) {
+        int slot = hash(buffer, from, to) & mask;
+        while (true) {
+            byte[] key = keys[slot];
+            if (key == null) return null;
+            if (matches(key, buffer, from, to)) return values[slot];
+            slot = slot + 1 & mask;
+        }
+    }
+
+    private static int hash(byte[] key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key) hash = (hash ^ b) * 0x01000193;
+        return hash ^ hash >>> 16;
+    }
+
+    private static int hash(ByteBuffer buffer, int from, int to) {
+        int hash = 0x811c9dc5;
+        for (int i = from; i < to; i++) hash = (hash ^ buffer.get(i)) * 0x01000193;
+        return hash ^ hash >>> 16;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int from, int to) {
+        if (key.length != to - from) return false;
+        for (int i = 0; i < key.length; i++) if (key[i] != buffer.get(from + i)) return false;
+        return true;
+    }
+}
@@ -0,0 +1,427 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BooleanSupplier;
+
+import io.github.defective4.dsp.vcd4j.data.BitVector;
+import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.State;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+
+/**
+ * Byte-level scanner of memory-mapped VCD files.
+ * <p>
+ * The value change section is decoded directly from mapped ASCII bytes.
+ * Timestamps, scalar states and <code>b...</code> vectors are parsed in place
+ * and identifiers are resolved through an {@link IdentifierTable}, so no
+ * intermediate strings are created unless an error has to be reported. Values
+ * of variables mapped to {@link IdentifierTable#SKIP} are not decoded at all.
+ * </p>
+ * Files larger than {@link #WINDOW_SIZE} are mapped in consecutive windows
+ * aligned to line boundaries. Since timestamps in the value change section are
+ * ascending, a timestamp can be located with a binary search over
+ * <code>#</code> lines, without reading the file up to it.
+ */
+final class MappedVCDScanner {
+    /**
+     * Read-only view of ASCII bytes of a buffer as characters
+     */
+    private static final class AsciiSequence implements CharSequence {
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+
+        private AsciiSequence(ByteBuffer buffer, int from, int to) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) buffer.get(from + index);
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(buffer, from + start, from + end);
+        }
+
+        @Override
+        public String toString() {
+            return lineString(buffer, from, to);
+        }
+    }
+
+    /**
+     * Maximum number of bytes mapped at once
+     */
+    static final int WINDOW_SIZE = 1 << 28;
+
+    /**
+     * Returned by {@link #parseVector(ByteBuffer, int, int, int)} for values
+     * with some, but not all, bits unknown
+     */
+    private static final int PARTIAL = -2;
+    private static final int PROBE_SIZE = 1 << 16;
+
+    private MappedVCDScanner() {}
+
+    /**
+     * Finds the beginning of the value change section.
+     *
+     * @param  buffer      buffer containing the file header
+     * @return             index of the first byte after <code>$dumpvars</code>
+     *                     and the whitespace that follows it
+     * @throws IOException if the header doesn't end within the buffer
+     */
+    static int findBodyStart(ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        int pos = 0;
+        while (true) {
+            while (pos < limit && buffer.get(pos) != '$') pos++;
+            int tagEnd = pos + 1;
+            while (tagEnd < limit && !isWhitespace(buffer.get(tagEnd))) tagEnd++;
+            if (tagEnd >= limit) throw new IOException("End of stream");
+            if (equalsIgnoreCase(buffer, pos + 1, tagEnd, "dumpvars")) return tagEnd + 1;
+            pos = tagEnd + 1;
+            while (true) {
+                if (pos + 4 > limit) throw new IOException("End of stream");
+                if (buffer.get(pos) == '$' && equalsIgnoreCase(buffer, pos + 1, pos + 4, "end")) break;
+                pos++;
+            }
+            pos += 4;
+        }
+    }
+
+    /**
+     * Finds the first line starting with the given character.
+     *
+     * @param  channel     channel of the file
+     * @param  from        file position to start searching from
+     * @param  to          file position to end searching at
+     * @param  first       first character of the line to find
+     * @return             file position of the line's first character, or
+     *                     <code>to</code> if there is no such line in range
+     * @throws IOException if an I/O error occurs
+     */
+    static long findLine(FileChannel channel, long from, long to, char first) throws IOException {
+        long position = Math.max(from - 1, 0);
+        while (position < to) {
+            int length = (int) Math.min(to - position, PROBE_SIZE);
+            ByteBuffer probe = channel.map(MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length - 1; i++)
+                if (probe.get(i) == '\n' && probe.get(i + 1) == first) return position + i + 1;
+            if (position + length == to) break;
+            position += length - 1;
+        }
+        return to;
+    }
+
+    /**
+     * Finds the last timestamp line before the given time using a binary search.
+     *
+     * @param  channel     channel of the file
+     * @param  from        file position to start searching from
+     * @param  to          file position to end searching at
+     * @param  timestamp   time to search for
+     * @param  inclusive   whether a line with a timestamp equal to
+     *                     <code>timestamp</code> may be returned
+     * @return             file position of the last <code>#</code> line with a
+     *                     timestamp lower than (or equal to, if inclusive)
+     *                     <code>timestamp</code>, or -1 if there is no such line
+     * @throws IOException if an I/O error occurs or a timestamp is malformed
+     */
+    static long findTimestamp(FileChannel channel, long from, long to, long timestamp, boolean inclusive)
+            throws IOException {
+        long found = -1;
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long mid = low + (high - low) / 2;
+            long line = findLine(channel, mid, to, '#');
+            if (line == to) {
+                high = mid;
+                continue;
+            }
+            long time = readTimestamp(channel, line, to);
+            if (time < timestamp || inclusive && time == timestamp) {
+                found = line;
+                low = line + 1;
+            } else high = mid;
+        }
+        return found;
+    }
+
+    /**
+     * Reads the header of a mapped file.<br>
+     * The returned reader contains no value changes.
+     *
+     * @param  buffer      buffer containing the file header
+     * @param  bodyStart   result of {@link #findBodyStart(ByteBuffer)}
+     * @param  charset     charset of the file
+     * @return             a reader holding the parsed header
+     * @throws IOException if the header is malformed
+     */
+    static VCDReader readHeader(ByteBuffer buffer, int bodyStart, Charset charset) throws IOException {
+        String header = charset.decode(buffer.slice(0, bodyStart)).toString();
+        return new VCDReader(new StringReader(header));
+    }
+
+    /**
+     * Reads the timestamp of a <code>#</code> line.
+     *
+     * @param  channel     channel of the file
+     * @param  position    file position of the line
+     * @param  to          file position to end reading at
+     * @return             the timestamp
+     * @throws IOException if an I/O error occurs or the timestamp is malformed
+     */
+    static long readTimestamp(FileChannel channel, long position, long to) throws IOException {
+        int length = (int) Math.min(to - position, 64);
+        ByteBuffer line = channel.map(MapMode.READ_ONLY, position, length);
+        int end = 0;
+        while (end < length && !isWhitespace(line.get(end))) end++;
+        return parseTimestamp(line, 0, end);
+    }
+
+    /**
+     * Decodes a range of a file backwards, from its last line to its first.<br>
+     * This is used to find the latest values of variables without decoding
+     * everything that precedes them.
+     *
+     * @param  channel     channel of the file
+     * @param  from        file position of the first byte of a line
+     * @param  to          file position ending the last line to decode
+     * @param  ids         identifiers of all variables
+     * @param  sink        receiver of decoded changes
+     * @param  done        checked after each line, stops scanning once it
+     *                     returns true
+     * @throws IOException if an I/O error occurs or the value change section is
+     *                     malformed
+     */
+    static void reverseScan(FileChannel channel, long from, long to, IdentifierTable ids, ValueChangeSink sink,
+            BooleanSupplier done) throws IOException {
+        long position = to;
+        while (position > from && !done.getAsBoolean()) {
+            long start = Math.max(from, position - WINDOW_SIZE);
+            int length = (int) (position - start);
+            ByteBuffer window = channel.map(MapMode.READ_ONLY, start, length);
+            int first = 0;
+            if (start > from) {
+                while (first < length && window.get(first) != '\n') first++;
+                if (first == length) throw new IOException("Line at position " + start + " is too long");
+                first++;
+            }
+            int end = length;
+            while (end > first) {
+                int lineEnd = end;
+                if (window.get(lineEnd - 1) == '\n') lineEnd--;
+                int lineStart = lineEnd;
+                while (lineStart > first && window.get(lineStart - 1) != '\n') lineStart--;
+                end = lineStart;
+                if (lineEnd > lineStart && window.get(lineEnd - 1) == '\r') lineEnd--;
+                if (lineEnd > lineStart) scanLine(window, lineStart, lineEnd, ids, sink);
+                if (done.getAsBoolean()) return;
+            }
+            position = start + first;
+        }
+    }
+
+    /**
+     * Decodes all complete lines in the given range of a buffer.
+     *
+     * @param  buffer      buffer to scan
+     * @param  from        index of the first byte of a line
+     * @param  to          index after the last byte to scan
+     * @param  last        whether <code>to</code> is known to end a line
+     * @param  ids         identifiers of all variables
+     * @param  sink        receiver of decoded changes
+     * @return             index of the first byte that wasn't consumed, because it
+     *                     belongs to an incomplete line
+     * @throws IOException if the value change section is malformed
+     */
+    static int scan(ByteBuffer buffer, int from, int to, boolean last, IdentifierTable ids, ValueChangeSink sink)
+            throws IOException {
+        int pos = from;
+        while (pos < to) {
+            int end = pos;
+            while (end < to && buffer.get(end) != '\n') end++;
+            if (end == to && !last) return pos;
+            int lineEnd = end;
+            if (lineEnd > pos && buffer.get(lineEnd - 1) == '\r') lineEnd--;
+            if (lineEnd > pos) scanLine(buffer, pos, lineEnd, ids, sink);
+            pos = end + 1;
+        }
+        return to;
+    }
+
+    /**
+     * Decodes a range of a file, mapping it in windows of at most
+     * {@link #WINDOW_SIZE} bytes.
+     *
+     * @param  channel     channel of the file
+     * @param  from        file position of the first byte of a line
+     * @param  to          file position ending the last line to decode
+     * @param  ids         identifiers of all variables
+     * @param  sink        receiver of decoded changes
+     * @throws IOException if an I/O error occurs or the value change section is
+     *                     malformed
+     */
+    static void scan(FileChannel channel, long from, long to, IdentifierTable ids, ValueChangeSink sink)
+            throws IOException {
+        long position = from;
+        while (position < to) {
+            int length = (int) Math.min(to - position, WINDOW_SIZE);
+            boolean last = position + length == to;
+            ByteBuffer window = channel.map(MapMode.READ_ONLY, position, length);
+            int consumed = scan(window, 0, length, last, ids, sink);
+            if (consumed == 0) throw new IOException("Line at position " + position + " is too long");
+            position += consumed;
+        }
+    }
+
+    /**
+     * Finds the end of the line containing the given position.
+     *
+     * @param  channel     channel of the file
+     * @param  position    file position within a line
+     * @param  to          file position to end searching at
+     * @return             file position after the line's terminator, or
+     *                     <code>to</code> if the line isn't terminated in range
+     * @throws IOException if an I/O error occurs
+     */
+    static long skipLine(FileChannel channel, long position, long to) throws IOException {
+        while (position < to) {
+            int length = (int) Math.min(to - position, PROBE_SIZE);
+            ByteBuffer probe = channel.map(MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) if (probe.get(i) == '\n') return position + i + 1;
+            position += length;
+        }
+        return to;
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer buffer, int from, int to, String str) {
+        if (to - from != str.length()) return false;
+        for (int i = 0; i < str.length(); i++)
+            if (Character.toLowerCase((char) buffer.get(from + i)) != str.charAt(i)) return false;
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0b;
+    }
+
+    private static String lineString(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static VariableDefinition lookup(ByteBuffer buffer, int from, int to, int keyFrom, IdentifierTable ids)
+            throws IOException {
+        VariableDefinition variable = ids.get(buffer, keyFrom, to);
+        if (variable == null) throw new IOException(String
+                .format("No variable bound to string \"%s\" in line: %s", lineString(buffer, keyFrom, to),
+                        lineString(buffer, from, to)));
+        return variable;
+    }
+
+    private static long parseTimestamp(ByteBuffer buffer, int from, int to) throws IOException {
+        int pos = from + 1;
+        boolean negative = false;
+        if (pos < to && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        if (pos == to) throw new IOException("Invalid timestamp in line " + lineString(buffer, from, to));
+        long value = 0;
+        for (; pos < to; pos++) {
+            int digit = buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10)
+                throw new IOException("Invalid timestamp in line " + lineString(buffer, from, to));
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private static void scanLine(ByteBuffer buffer, int from, int to, IdentifierTable ids, ValueChangeSink sink)
+            throws IOException {
+        byte first = buffer.get(from);
+        if (first == '$') return;
+        if (isWhitespace(first)) {
+            int pos = from;
+            while (pos < to && isWhitespace(buffer.get(pos))) pos++;
+            if (pos == to) return;
+        }
+        switch (first) {
+            case '#' -> sink.timestamp(parseTimestamp(buffer, from, to));
+            case 'b' -> {
+                int ix = from + 1;
+                while (ix < to && buffer.get(ix) != ' ') ix++;
+                if (ix == to) throw new IOException("Invalid multibit variable found: " + lineString(buffer, from, to));
+                VariableDefinition variable = lookup(buffer, from, to, ix + 1, ids);
+                if (variable == IdentifierTable.SKIP) return;
+                int value = variable.isWide() ? PARTIAL : parseVector(buffer, from, to, ix);
+                if (value == PARTIAL) sink.vectorChange(variable, parseBitVector(buffer, from, to, ix, variable));
+                else sink.multibitChange(variable, value);
+            }
+            default -> {
+                VariableDefinition variable = lookup(buffer, from, to, from + 1, ids);
+                if (variable == IdentifierTable.SKIP) return;
+                State state = switch (first) {
+                    case '0' -> State.LOW;
+                    case '1' -> State.HIGH;
+                    case 'x', 'X' -> State.UNDEFINED;
+                    case 'z', 'Z' -> State.FLOATING;
+                    default -> throw new IOException(String
+                            .format("Invalid state \"%s\" on line: %s", Character.toLowerCase((char) first),
+                                    lineString(buffer, from, to)));
+                };
+                sink.binaryChange(variable, state);
+            }
+        }
+    }
+
+    private static BitVector parseBitVector(ByteBuffer buffer, int from, int to, int bitsEnd,
+            VariableDefinition variable) throws IOException {
+        try {
+            return BitVector.parse(new AsciiSequence(buffer, from + 1, bitsEnd), variable.getBitCount());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid multibit value for variable on line: " + lineString(buffer, from, to), e);
+        }
+    }
+
+    private static int parseVector(ByteBuffer buffer, int from, int to, int bitsEnd) throws IOException {
+        int undefined = 0;
+        int floating = 0;
+        long value = 0;
+        for (int i = from + 1; i < bitsEnd; i++) {
+            byte b = buffer.get(i);
+            if (b == 'x' || b == 'X') {
+                undefined++;
+            } else if (b == 'z' || b == 'Z') {
+                floating++;
+            } else if (b == '0' || b == '1') {
+                value = value << 1 | b - '0';
+                if (value > Integer.MAX_VALUE) throw new IOException(
+                        "Invalid multibit value for variable on line: " + lineString(buffer, from, to));
+            } else throw new IOException(
+                    "Invalid multibit value for variable on line: " + lineString(buffer, from, to));
+        }
+        if (undefined == 0 && floating == 0) return (int) value;
+        if (undefined == bitsEnd - from - 1) return MultibitChangeEntry.UNDEFINED;
+        return PARTIAL;
+    }
+}
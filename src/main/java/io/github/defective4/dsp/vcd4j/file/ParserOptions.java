@@ -0,0 +1,361 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import io.github.defective4.dsp.vcd4j.data.ScopeTree;
+import io.github.defective4.dsp.vcd4j.data.ValueChangeColumns;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+
+/**
+ * Options controlling how {@link VCDParser} reads VCD files.
+ * <p>
+ * Instances are immutable and constructed with {@link Builder}. Options apply
+ * to the {@link File}-based parse methods, such as
+ * {@link VCDParser#parse(File, ParserOptions)}.
+ * </p>
+ */
+public class ParserOptions {
+    /**
+     * The builder class
+     */
+    public static class Builder {
+        private boolean backgroundDecompression = true;
+        private boolean columnar;
+        private long endTime = Long.MAX_VALUE;
+        private boolean memoryMapped;
+        private boolean parallel;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+        private boolean seekIndex;
+        private long startTime = Long.MIN_VALUE;
+        private Predicate<VariableDefinition> variableFilter;
+
+        public ParserOptions build() {
+            return new ParserOptions(this);
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        public ForkJoinPool getPool() {
+            return pool;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public Predicate<VariableDefinition> getVariableFilter() {
+            return variableFilter;
+        }
+
+        public boolean isBackgroundDecompression() {
+            return backgroundDecompression;
+        }
+
+        public boolean isColumnar() {
+            return columnar;
+        }
+
+        public boolean isMemoryMapped() {
+            return memoryMapped;
+        }
+
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        public boolean isSeekIndex() {
+            return seekIndex;
+        }
+
+        /**
+         * If set to true, compressed files are decompressed on a background
+         * thread, ahead of the parser, so decompression and parsing overlap.
+         * Otherwise they are decompressed on the parsing thread.<br>
+         * <b>Default value:</b> true
+         *
+         * @param  backgroundDecompression
+         * @return
+         */
+        public Builder setBackgroundDecompression(boolean backgroundDecompression) {
+            this.backgroundDecompression = backgroundDecompression;
+            return this;
+        }
+
+        /**
+         * If set to true, parsed value changes are stored in
+         * {@link ValueChangeColumns} instead of a map of change entry objects.<br>
+         * When combined with memory-mapped, non-parallel parsing, the columns are
+         * filled directly from the file without creating change entries.<br>
+         * <b>Default value:</b> false
+         *
+         * @param  columnar
+         * @return
+         */
+        public Builder setColumnar(boolean columnar) {
+            this.columnar = columnar;
+            return this;
+        }
+
+        /**
+         * If set to true, the parser will memory-map the file and decode the value
+         * change section directly from its bytes, without allocating intermediate
+         * strings for each line.<br>
+         * Compressed files can't be memory-mapped, so this option is ignored for
+         * them.<br>
+         * <b>Default value:</b> false
+         *
+         * @param  memoryMapped
+         * @return
+         */
+        public Builder setMemoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+            return this;
+        }
+
+        /**
+         * If set to true, the value change section is split into chunks at
+         * <code>#</code> boundaries, which are then parsed concurrently on the
+         * configured pool and merged in file order.<br>
+         * Parallel parsing always decodes the file from memory-mapped bytes, so
+         * it's not used for compressed files.<br>
+         * <b>Default value:</b> false
+         *
+         * @param  parallel
+         * @return
+         */
+        public Builder setParallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        /**
+         * Sets the pool used for parallel parsing.<br>
+         * <b>Default value:</b> {@link ForkJoinPool#commonPool()}
+         *
+         * @param  pool a non-null fork join pool
+         * @return
+         */
+        public Builder setPool(ForkJoinPool pool) {
+            Objects.requireNonNull(pool);
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * If set to true, parsing a time range of an uncompressed file starts at
+         * the nearest checkpoint of its {@link VCDIndex}, instead of searching the
+         * whole file. The index is loaded from its sidecar file, or built and saved
+         * there if it's missing or the file was modified since. If the sidecar file
+         * can't be written, the index is only kept in memory.<br>
+         * This option has no effect unless a time range is set.<br>
+         * <b>Default value:</b> false
+         *
+         * @param  seekIndex
+         * @return
+         * @see              #setTimeRange(long, long)
+         */
+        public Builder setSeekIndex(boolean seekIndex) {
+            this.seekIndex = seekIndex;
+            return this;
+        }
+
+        /**
+         * Selects variables to parse by their names, hierarchical names or
+         * identifiers.<br>
+         * Hierarchical names, such as <code>top.cpu.clk</code>, and names of
+         * aliases are resolved with the {@link ScopeTree} of the parsed file.
+         * Selecting an alias selects the variable it refers to, along with all
+         * of its other aliases.<br>
+         * This is a shortcut for {@link #setVariableFilter(Predicate)}.
+         *
+         * @param  variables names, hierarchical names or identifiers of variables
+         *                   to parse
+         * @return
+         */
+        public Builder setSelectedVariables(Collection<String> variables) {
+            return setVariableFilter(new Selection(variables));
+        }
+
+        /**
+         * Limits parsing to value changes stored under timestamps within the given
+         * range.<br>
+         * The first parsed timestamp also receives the latest values that
+         * variables had before the range, so the parsed VCD starts with the full
+         * state of the signals. Uncompressed files are memory-mapped and the start
+         * of the range is found with a binary search over timestamps, regardless of
+         * {@link #setMemoryMapped(boolean)}. Parsing stops at the end of the
+         * range.<br>
+         * <b>Default value:</b> all timestamps
+         *
+         * @param  startTime first timestamp to parse
+         * @param  endTime   last timestamp to parse
+         * @return
+         * @throws IllegalArgumentException if <code>startTime</code> is greater
+         *                                  than <code>endTime</code>
+         */
+        public Builder setTimeRange(long startTime, long endTime) {
+            if (startTime > endTime) throw new IllegalArgumentException("startTime can't be greater than endTime");
+            this.startTime = startTime;
+            this.endTime = endTime;
+            return this;
+        }
+
+        /**
+         * Sets a predicate selecting variables to parse.<br>
+         * Other variables are left out of the parsed VCD, and their changes are
+         * skipped without being decoded. With uncompressed files this is done by
+         * the memory-mapped scanner, regardless of {@link #setMemoryMapped(boolean)},
+         * so skipped changes don't allocate any objects.<br>
+         * <b>Default value:</b> <code>null</code> (all variables are parsed)
+         *
+         * @param  variableFilter predicate selecting variables, or
+         *                        <code>null</code>
+         * @return
+         */
+        public Builder setVariableFilter(Predicate<VariableDefinition> variableFilter) {
+            this.variableFilter = variableFilter;
+            return this;
+        }
+    }
+
+    /**
+     * Variable filter selecting variables by their names, hierarchical names or
+     * identifiers. Without a scope tree, only names of definitions and
+     * identifiers are matched
+     */
+    static final class Selection implements Predicate<VariableDefinition> {
+        private final Set<String> selected;
+
+        private Selection(Collection<String> selected) {
+            this.selected = Set.copyOf(selected);
+        }
+
+        @Override
+        public boolean test(VariableDefinition variable) {
+            return selected.contains(variable.getName()) || selected.contains(variable.getIdentifier());
+        }
+
+        /**
+         * @param  scopeTree scope tree of the parsed file
+         * @return           a filter also matching names and hierarchical names
+         *                   declared in the tree
+         */
+        Predicate<VariableDefinition> resolve(ScopeTree scopeTree) {
+            Set<VariableDefinition> found = new HashSet<>();
+            collect(scopeTree.getRoot(), "", found);
+            return variable -> found.contains(variable) || test(variable);
+        }
+
+        private void collect(ScopeTree.Node node, String prefix, Set<VariableDefinition> found) {
+            List<String> names = node.getVariableNames();
+            for (int i = 0; i < names.size(); i++)
+                if (selected.contains(names.get(i)) || selected.contains(prefix + names.get(i)))
+                    found.add(node.getVariables().get(i));
+            for (ScopeTree.Node child : node.getChildren())
+                collect(child, prefix + child.getScope().getName() + ScopeTree.SEPARATOR, found);
+        }
+
+        /**
+         * @param  filter    a variable filter, or <code>null</code>
+         * @param  scopeTree scope tree of the parsed file
+         * @return           the filter, with selected hierarchical names resolved
+         *                   if it was created by
+         *                   {@link Builder#setSelectedVariables(Collection)}
+         */
+        static Predicate<VariableDefinition> resolve(Predicate<VariableDefinition> filter, ScopeTree scopeTree) {
+            return filter instanceof Selection selection ? selection.resolve(scopeTree) : filter;
+        }
+    }
+
+    /**
+     * Default options, equivalent to the behaviour of
+     * {@link VCDParser#parse(File)}
+     */
+    public static final ParserOptions DEFAULT = new Builder().build();
+
+    private final boolean backgroundDecompression;
+    private final boolean columnar;
+    private final long endTime;
+    private final boolean memoryMapped;
+    private final boolean parallel;
+    private final ForkJoinPool pool;
+    private final boolean seekIndex;
+    private final long startTime;
+    private final Predicate<VariableDefinition> variableFilter;
+
+    private ParserOptions(Builder builder) {
+        backgroundDecompression = builder.backgroundDecompression;
+        columnar = builder.columnar;
+        endTime = builder.endTime;
+        memoryMapped = builder.memoryMapped;
+        parallel = builder.parallel;
+        pool = builder.pool;
+        seekIndex = builder.seekIndex;
+        startTime = builder.startTime;
+        variableFilter = builder.variableFilter;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return predicate selecting variables to parse, or <code>null</code> if
+     *         all variables are parsed
+     */
+    public Predicate<VariableDefinition> getVariableFilter() {
+        return variableFilter;
+    }
+
+    /**
+     * @return whether parsing is limited to a time range
+     */
+    public boolean hasTimeRange() {
+        return startTime != Long.MIN_VALUE || endTime != Long.MAX_VALUE;
+    }
+
+    public boolean isBackgroundDecompression() {
+        return backgroundDecompression;
+    }
+
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public boolean isSeekIndex() {
+        return seekIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "ParserOptions [backgroundDecompression=" + backgroundDecompression + ", columnar=" + columnar
+                + ", endTime=" + endTime + ", memoryMapped=" + memoryMapped + ", parallel=" + parallel + ", pool="
+                + pool + ", seekIndex=" + seekIndex + ", startTime=" + startTime + ", variableFilter=" + variableFilter
+                + "]";
+    }
+}
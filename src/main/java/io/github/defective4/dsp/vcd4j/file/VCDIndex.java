@@ -0,0 +1,461 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.github.defective4.dsp.vcd4j.data.BinaryChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.BitVector;
+import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.State;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.data.VectorChangeEntry;
+import io.github.defective4.dsp.vcd4j.file.BinaryVCDFormat.Input;
+import io.github.defective4.dsp.vcd4j.file.BinaryVCDFormat.Output;
+
+/**
+ * Seek index of an uncompressed VCD file, stored in a sidecar file next to it.
+ * <p>
+ * The index holds checkpoints placed every {@link #getInterval()} bytes of the
+ * value change section. A checkpoint is a <code>#</code> line, its timestamp
+ * and file position, and a snapshot of the values all variables had before it.
+ * Parsing a time range with {@link ParserOptions.Builder#setSeekIndex(boolean)}
+ * starts at the nearest checkpoint, so only a part of a single interval has to
+ * be decoded to find the range and its initial values.
+ * </p>
+ * The length and modification time of the VCD file are stored in the index, so
+ * an index of a file that was modified since is ignored by
+ * {@link #load(File)}.
+ */
+public final class VCDIndex {
+    /**
+     * Latest values of variables, updated by decoded changes.<br>
+     * Values are encoded as in snapshots: 0 for no value, odd numbers for
+     * states of scalar changes, and even numbers for zigzag-encoded values of
+     * multi-bit changes, combined with their unknown planes. Wide variables take more slots - 1 if they have a
+     * value, followed by words of the value plane and the unknown plane.
+     */
+    static final class StateTracker implements ValueChangeSink {
+        private final Map<VariableDefinition, Integer> slots = new IdentityHashMap<>();
+        private final long[] values;
+
+        private StateTracker(VariableDefinition[] variables, long[] values) {
+            this.values = values;
+            int slot = 0;
+            for (VariableDefinition variable : variables) {
+                slots.put(variable, slot);
+                slot += getSlotCount(variable);
+            }
+        }
+
+        @Override
+        public void binaryChange(VariableDefinition variable, State state) {
+            Integer slot = slots.get(variable);
+            if (slot != null) values[slot] = 1 + ((long) state.ordinal() << 1);
+        }
+
+        /**
+         * @param  variable the variable
+         * @return          change restoring the tracked value of the variable, or
+         *                  <code>null</code> if it has no value
+         */
+        ChangeEntry<?> getChange(VariableDefinition variable) {
+            Integer slot = slots.get(variable);
+            if (slot == null || values[slot] == 0) return null;
+            if (variable.isWide()) {
+                int words = BitVector.getWordCount(variable.getBitCount());
+                return new VectorChangeEntry(variable,
+                        new BitVector(variable.getBitCount(), Arrays.copyOfRange(values, slot + 1, slot + 1 + words),
+                                Arrays.copyOfRange(values, slot + 1 + words, slot + 1 + words * 2)));
+            }
+            long value = values[slot] - 1;
+            if ((value & 1) == 0) return BinaryChangeEntry.of(variable, STATES[(int) (value >> 1)]);
+            long code = BinaryVCDFormat.decodeZigZag(value >>> 1);
+            int unknownBits = BinaryVCDFormat.decodeUnknownBits(code);
+            if (unknownBits == 0) return MultibitChangeEntry.of(variable, BinaryVCDFormat.decodeValue(code));
+            return new VectorChangeEntry(variable, new BitVector(variable.getBitCount(),
+                    new long[] { BinaryVCDFormat.decodeValue(code) }, new long[] { unknownBits }));
+        }
+
+        @Override
+        public void multibitChange(VariableDefinition variable, int value) {
+            Integer slot = slots.get(variable);
+            if (slot != null) values[slot] = 2 + (BinaryVCDFormat.encodeZigZag(value) << 1);
+        }
+
+        @Override
+        public void timestamp(long timestamp) {}
+
+        @Override
+        public void vectorChange(VariableDefinition variable, BitVector value) {
+            Integer slot = slots.get(variable);
+            if (slot == null) return;
+            if (!variable.isWide()) {
+                long code = BinaryVCDFormat.encodeMultibit((int) value.getValueWord(0), (int) value.getUnknownWord(0));
+                values[slot] = 2 + (BinaryVCDFormat.encodeZigZag(value.isUndefined() ? -1 : code) << 1);
+                return;
+            }
+            int words = value.getWordCount();
+            values[slot] = 1;
+            for (int i = 0; i < words; i++) {
+                values[slot + 1 + i] = value.getValueWord(i);
+                values[slot + 1 + words + i] = value.getUnknownWord(i);
+            }
+        }
+    }
+
+    /**
+     * Default distance between checkpoints, in bytes
+     */
+    public static final int DEFAULT_INTERVAL = 1 << 20;
+
+    private static final byte[] MAGIC = { 'V', 'C', 'D', 'I' };
+    private static final State[] STATES = State.values();
+    private static final int VERSION = 2;
+
+    private final String[] identifiers;
+    private final int interval;
+    private final long[] offsets;
+    private final int slotCount;
+    private final long[][] snapshots;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final long[] timestamps;
+
+    private VCDIndex(long sourceLength, long sourceModified, int interval, String[] identifiers, int slotCount,
+            long[] timestamps, long[] offsets, long[][] snapshots) {
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.interval = interval;
+        this.identifiers = identifiers;
+        this.slotCount = slotCount;
+        this.timestamps = timestamps;
+        this.offsets = offsets;
+        this.snapshots = snapshots;
+    }
+
+    public int getCheckpointCount() {
+        return timestamps.length;
+    }
+
+    /**
+     * @return distance between checkpoints, in bytes
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param  checkpoint index of the checkpoint
+     * @return            file position of the checkpoint's <code>#</code> line
+     */
+    public long getOffset(int checkpoint) {
+        return offsets[checkpoint];
+    }
+
+    /**
+     * @param  checkpoint index of the checkpoint
+     * @return            timestamp of the checkpoint
+     */
+    public long getTimestamp(int checkpoint) {
+        return timestamps[checkpoint];
+    }
+
+    /**
+     * Checks if this index was built for the current contents of a file
+     *
+     * @param  vcdFile the indexed file
+     * @return         <code>true</code> if the file's length and modification
+     *                 time match the ones stored in this index
+     */
+    public boolean isCurrent(File vcdFile) {
+        Objects.requireNonNull(vcdFile);
+        return vcdFile.length() == sourceLength && vcdFile.lastModified() == sourceModified;
+    }
+
+    /**
+     * Saves this index to the sidecar file of the given VCD file.<br>
+     * The index is written to a temporary file first, which then replaces the
+     * sidecar file, so concurrent readers never see a partial index.
+     *
+     * @param  vcdFile     the indexed file
+     * @throws IOException if an I/O error occurs
+     */
+    public void save(File vcdFile) throws IOException {
+        File indexFile = getIndexFile(vcdFile);
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp.toPath()), 1 << 16)) {
+            Output data = new Output();
+            for (byte b : MAGIC) data.writeByte(b);
+            data.writeByte(VERSION);
+            data.writeVarLong(sourceLength);
+            data.writeVarLong(BinaryVCDFormat.encodeZigZag(sourceModified));
+            data.writeVarInt(interval);
+            data.writeVarInt(identifiers.length);
+            for (String identifier : identifiers) data.writeString(identifier);
+            data.writeVarInt(slotCount);
+            data.writeVarInt(timestamps.length);
+            long lastTimestamp = 0;
+            long lastOffset = 0;
+            for (int i = 0; i < timestamps.length; i++) {
+                data.writeVarLong(BinaryVCDFormat.encodeZigZag(timestamps[i] - lastTimestamp));
+                data.writeVarLong(offsets[i] - lastOffset);
+                lastTimestamp = timestamps[i];
+                lastOffset = offsets[i];
+                for (long value : snapshots[i]) data.writeVarLong(value);
+                data.writeTo(out);
+                data.reset();
+            }
+            data.writeTo(out);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        try {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VCDIndex [checkpoints=" + timestamps.length + ", interval=" + interval + ", sourceLength="
+                + sourceLength + ", variables=" + identifiers.length + "]";
+    }
+
+    /**
+     * Finds the file position to search for a timestamp from
+     *
+     * @param  timestamp the timestamp
+     * @param  inclusive whether a checkpoint at exactly <code>timestamp</code>
+     *                   may be used
+     * @param  fallback  position to return if no checkpoint precedes the
+     *                   timestamp
+     * @return           position of the last checkpoint before (or at, if
+     *                   inclusive) the timestamp, or <code>fallback</code>
+     */
+    long floorOffset(long timestamp, boolean inclusive, long fallback) {
+        int checkpoint = floor(timestamp, inclusive);
+        return checkpoint < 0 ? fallback : offsets[checkpoint];
+    }
+
+    /**
+     * Creates a tracker holding the values variables had at the last checkpoint
+     * before a timestamp, that is, at {@link #floorOffset(long, boolean, long)}
+     * (not inclusive).
+     *
+     * @param  timestamp   the timestamp
+     * @param  variables   variables of the indexed file, mapped by their
+     *                     identifiers
+     * @return             a state tracker
+     * @throws IOException if the variables don't match this index
+     */
+    StateTracker restore(long timestamp, Map<String, VariableDefinition> variables) throws IOException {
+        VariableDefinition[] definitions = new VariableDefinition[identifiers.length];
+        for (int i = 0; i < identifiers.length; i++) {
+            definitions[i] = variables.get(identifiers[i]);
+            if (definitions[i] == null) throw new IOException("Variable \"" + identifiers[i] + "\" is not indexed");
+        }
+        if (getSlotCount(definitions) != slotCount) throw new IOException("Variable widths don't match the index");
+        int checkpoint = floor(timestamp, false);
+        long[] values = checkpoint < 0 ? new long[slotCount] : snapshots[checkpoint].clone();
+        return new StateTracker(definitions, values);
+    }
+
+    private int floor(long timestamp, boolean inclusive) {
+        int index = Arrays.binarySearch(timestamps, timestamp);
+        if (index >= 0) return inclusive ? index : index - 1;
+        return -index - 2;
+    }
+
+    /**
+     * Builds an index of a UTF-8 VCD file with the default interval
+     *
+     * @param  vcdFile     the file to index
+     * @return             the index
+     * @throws IOException if an I/O error occurs, the file is malformed or
+     *                     compressed
+     */
+    public static VCDIndex build(File vcdFile) throws IOException {
+        return build(vcdFile, StandardCharsets.UTF_8, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Builds an index of a VCD file.<br>
+     * The file is decoded once from memory-mapped bytes, without creating any
+     * change entries.
+     *
+     * @param  vcdFile     the file to index
+     * @param  charset     charset of the file
+     * @param  interval    distance between checkpoints, in bytes
+     * @return             the index
+     * @throws IOException if an I/O error occurs, the file is malformed or
+     *                     compressed
+     */
+    public static VCDIndex build(File vcdFile, Charset charset, int interval) throws IOException {
+        Objects.requireNonNull(vcdFile);
+        Objects.requireNonNull(charset);
+        if (interval < 1) throw new IllegalArgumentException("interval must be positive");
+        if (CompressionCodecs.detect(vcdFile) != null)
+            throw new IOException("Compressed files can't be indexed: " + vcdFile);
+        long modified = vcdFile.lastModified();
+        try (FileChannel channel = FileChannel.open(vcdFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = channel.map(MapMode.READ_ONLY, 0, Math.min(size, MappedVCDScanner.WINDOW_SIZE));
+            int bodyStart = MappedVCDScanner.findBodyStart(head);
+            try (VCDReader header = MappedVCDScanner.readHeader(head, bodyStart, charset)) {
+                VariableDefinition[] variables = header.getVariableDefinitions().values()
+                        .toArray(VariableDefinition[]::new);
+                String[] identifiers = new String[variables.length];
+                for (int i = 0; i < variables.length; i++) identifiers[i] = variables[i].getIdentifier();
+                IdentifierTable ids = new IdentifierTable(Arrays.asList(variables));
+                int slotCount = getSlotCount(variables);
+                StateTracker state = new StateTracker(variables, new long[slotCount]);
+
+                List<long[]> snapshots = new ArrayList<>();
+                long[] timestamps = new long[16];
+                long[] offsets = new long[16];
+                long position = bodyStart;
+                while (size - position > interval) {
+                    long line = MappedVCDScanner.findLine(channel, position + interval, size, '#');
+                    if (line == size) break;
+                    MappedVCDScanner.scan(channel, position, line, ids, state);
+                    int count = snapshots.size();
+                    if (count == timestamps.length) {
+                        timestamps = Arrays.copyOf(timestamps, count * 2);
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    timestamps[count] = MappedVCDScanner.readTimestamp(channel, line, size);
+                    offsets[count] = line;
+                    snapshots.add(state.values.clone());
+                    position = line;
+                }
+                int count = snapshots.size();
+                return new VCDIndex(size, modified, interval, identifiers, slotCount, Arrays.copyOf(timestamps, count),
+                        Arrays.copyOf(offsets, count), snapshots.toArray(long[][]::new));
+            }
+        }
+    }
+
+    /**
+     * @param  vcdFile a VCD file
+     * @return         the sidecar file holding the index of the VCD file
+     */
+    public static File getIndexFile(File vcdFile) {
+        Objects.requireNonNull(vcdFile);
+        return new File(vcdFile.getPath() + ".idx");
+    }
+
+    /**
+     * Loads the index of a VCD file from its sidecar file
+     *
+     * @param  vcdFile     the indexed file
+     * @return             the index, or <code>null</code> if there is no sidecar
+     *                     file, the VCD file was modified since the index was
+     *                     built, or the index was saved in an older format
+     * @throws IOException if an I/O error occurs or the sidecar file is
+     *                     malformed
+     */
+    public static VCDIndex load(File vcdFile) throws IOException {
+        File indexFile = getIndexFile(vcdFile);
+        if (!indexFile.isFile()) return null;
+        try (InputStream stream = new FileInputStream(indexFile)) {
+            Input in = new Input(stream);
+            for (byte b : MAGIC) if (in.readByte() != b) throw new IOException("Not a VCD index file: " + indexFile);
+            int version = in.readByte();
+            if (version < VERSION) return null;
+            if (version != VERSION) throw new IOException("Unsupported VCD index version " + version);
+            long sourceLength = in.readVarLong();
+            long sourceModified = BinaryVCDFormat.decodeZigZag(in.readVarLong());
+            if (sourceLength != vcdFile.length() || sourceModified != vcdFile.lastModified()) return null;
+            int interval = in.readVarInt();
+            String[] identifiers = new String[in.readVarInt()];
+            for (int i = 0; i < identifiers.length; i++) identifiers[i] = in.readString();
+            int slotCount = in.readVarInt();
+            int count = in.readVarInt();
+            long[] timestamps = new long[count];
+            long[] offsets = new long[count];
+            long[][] snapshots = new long[count][];
+            long lastTimestamp = 0;
+            long lastOffset = 0;
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = lastTimestamp += BinaryVCDFormat.decodeZigZag(in.readVarLong());
+                offsets[i] = lastOffset += in.readVarLong();
+                if (lastOffset > sourceLength) throw new IOException("Checkpoint offset out of range: " + lastOffset);
+                snapshots[i] = new long[slotCount];
+                for (int j = 0; j < slotCount; j++) snapshots[i][j] = in.readVarLong();
+            }
+            return new VCDIndex(sourceLength, sourceModified, interval, identifiers, slotCount, timestamps, offsets,
+                    snapshots);
+        }
+    }
+
+    /**
+     * Opens the index of a UTF-8 VCD file.
+     *
+     * @param  vcdFile     the file to index
+     * @return             the index
+     * @throws IOException if an I/O error occurs, the file is malformed or
+     *                     compressed
+     * @see                #open(File, Charset)
+     */
+    public static VCDIndex open(File vcdFile) throws IOException {
+        return open(vcdFile, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens the index of a VCD file.<br>
+     * The index is loaded from the sidecar file if it's up to date. Otherwise
+     * it's built with the default interval and saved to the sidecar file. If
+     * the sidecar file can't be written, for example because the directory is
+     * read-only, the built index is returned without saving it.
+     *
+     * @param  vcdFile     the file to index
+     * @param  charset     charset of the file
+     * @return             the index
+     * @throws IOException if an I/O error occurs, the file is malformed or
+     *                     compressed
+     */
+    public static VCDIndex open(File vcdFile, Charset charset) throws IOException {
+        VCDIndex index = load(vcdFile);
+        if (index != null) return index;
+        index = build(vcdFile, charset, DEFAULT_INTERVAL);
+        try {
+            index.save(vcdFile);
+        } catch (IOException | SecurityException e) {
+            // The index is still usable, it will just be built again next time
+        }
+        return index;
+    }
+
+    private static int getSlotCount(VariableDefinition variable) {
+        return variable.isWide() ? 1 + 2 * BitVector.getWordCount(variable.getBitCount()) : 1;
+    }
+
+    private static int getSlotCount(VariableDefinition[] variables) {
+        int count = 0;
+        for (VariableDefinition variable : variables) count += getSlotCount(variable);
+        return count;
+    }
+}
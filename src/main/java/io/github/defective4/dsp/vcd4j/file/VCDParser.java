@@ -1,39 +1,203 @@
 package io.github.defective4.dsp.vcd4j.file;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
 
 import io.github.defective4.dsp.vcd4j.data.BinaryChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.BitVector;
 import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
 import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
-import io.github.defective4.dsp.vcd4j.data.Scope;
-import io.github.defective4.dsp.vcd4j.data.Scope.Type;
+import io.github.defective4.dsp.vcd4j.data.ScopeTree;
 import io.github.defective4.dsp.vcd4j.data.State;
-import io.github.defective4.dsp.vcd4j.data.TimeScale;
-import io.github.defective4.dsp.vcd4j.data.TimeScale.TimeScaleUnit;
 import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.data.ValueChangeColumns;
 import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.data.VectorChangeEntry;
 
 /**
  * Provides methods to parse VCD files into {@link VCD} objects.
  *
  * This class supports parsing from various input sources, such as files and
  * readers, and handles the structure and data representation of VCD files.
+ * <br>
+ * All parsed value changes are kept in memory. For files that don't fit in
+ * memory, use {@link VCDReader} instead.
  */
 public class VCDParser {
+    /**
+     * Collects decoded value changes of a single chunk of the value change
+     * section
+     */
+    private static final class ChunkSink implements ValueChangeSink {
+        private final List<List<ChangeEntry<?>>> blocks = new ArrayList<>();
+        private final List<ChangeEntry<?>> leading = new ArrayList<>();
+        private List<ChangeEntry<?>> pending = leading;
+        private final List<Long> timestamps = new ArrayList<>();
+
+        @Override
+        public void binaryChange(VariableDefinition variable, State state) {
+            pending.add(BinaryChangeEntry.of(variable, state));
+        }
+
+        @Override
+        public void multibitChange(VariableDefinition variable, int value) {
+            pending.add(MultibitChangeEntry.of(variable, value));
+        }
+
+        @Override
+        public void timestamp(long timestamp) {
+            timestamps.add(timestamp);
+            pending = new ArrayList<>();
+            blocks.add(pending);
+        }
+
+        @Override
+        public void vectorChange(VariableDefinition variable, BitVector value) {
+            pending.add(new VectorChangeEntry(variable, value));
+        }
+    }
+
+    /**
+     * Stores decoded value changes directly in columns
+     */
+    private static final class ColumnSink implements ValueChangeSink {
+        private final ValueChangeColumns.Builder builder = new ValueChangeColumns.Builder();
+        private final Map<VariableDefinition, Integer> indices = new IdentityHashMap<>();
+        private int pendingCount;
+        private int[] pendingValues = new int[16];
+        private int[] pendingVariables = new int[16];
+        private BitVector[] pendingVectors = new BitVector[16];
+
+        private ColumnSink(Collection<VariableDefinition> variables) {
+            for (VariableDefinition variable : variables) indices.put(variable, builder.addVariable(variable));
+        }
+
+        @Override
+        public void binaryChange(VariableDefinition variable, State state) {
+            add(variable, state.ordinal(), null);
+        }
+
+        @Override
+        public void multibitChange(VariableDefinition variable, int value) {
+            add(variable, value, null);
+        }
+
+        @Override
+        public void timestamp(long timestamp) throws IOException {
+            builder.addTimestamp(timestamp);
+            try {
+                for (int i = 0; i < pendingCount; i++) {
+                    int variable = pendingVariables[i];
+                    if (builder.isBinary(variable))
+                        builder.addBinaryChange(variable, timestamp, STATES[pendingValues[i]]);
+                    else if (pendingVectors[i] != null) {
+                        builder.addVectorChange(variable, timestamp, pendingVectors[i]);
+                        pendingVectors[i] = null;
+                    } else builder.addMultibitChange(variable, timestamp, pendingValues[i]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid value change before timestamp " + timestamp, e);
+            }
+            pendingCount = 0;
+        }
+
+        @Override
+        public void vectorChange(VariableDefinition variable, BitVector value) {
+            add(variable, 0, value);
+        }
+
+        private void add(VariableDefinition variable, int value, BitVector vector) {
+            if (pendingCount == pendingVariables.length) {
+                pendingVariables = Arrays.copyOf(pendingVariables, pendingCount * 2);
+                pendingValues = Arrays.copyOf(pendingValues, pendingCount * 2);
+                pendingVectors = Arrays.copyOf(pendingVectors, pendingCount * 2);
+            }
+            pendingVariables[pendingCount] = indices.get(variable);
+            pendingVectors[pendingCount] = vector;
+            pendingValues[pendingCount++] = value;
+        }
+    }
+
+    /**
+     * Collects the latest value of each variable while a file is scanned
+     * backwards
+     */
+    private static final class StateSink implements ValueChangeSink {
+        private final VCDIndex.StateTracker checkpoint;
+        private final Map<VariableDefinition, ChangeEntry<?>> latest = new IdentityHashMap<>();
+        private final Collection<VariableDefinition> variables;
+
+        /**
+         * @param variables  variables to collect values of
+         * @param checkpoint values of variables at the position where scanning
+         *                   stops, or <code>null</code> if it stops at the
+         *                   beginning of the value change section
+         */
+        private StateSink(Collection<VariableDefinition> variables, VCDIndex.StateTracker checkpoint) {
+            this.variables = variables;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public void binaryChange(VariableDefinition variable, State state) {
+            if (!latest.containsKey(variable)) latest.put(variable, BinaryChangeEntry.of(variable, state));
+        }
+
+        @Override
+        public void multibitChange(VariableDefinition variable, int value) {
+            if (!latest.containsKey(variable)) latest.put(variable, MultibitChangeEntry.of(variable, value));
+        }
+
+        @Override
+        public void timestamp(long timestamp) {}
+
+        @Override
+        public void vectorChange(VariableDefinition variable, BitVector value) {
+            if (!latest.containsKey(variable)) latest.put(variable, new VectorChangeEntry(variable, value));
+        }
+
+        private List<ChangeEntry<?>> getChanges() {
+            List<ChangeEntry<?>> changes = new ArrayList<>();
+            for (VariableDefinition variable : variables) {
+                ChangeEntry<?> change = latest.get(variable);
+                if (change == null && checkpoint != null) change = checkpoint.getChange(variable);
+                if (change != null) changes.add(change);
+            }
+            return changes;
+        }
+
+        private boolean isComplete() {
+            return latest.size() == variables.size();
+        }
+    }
+
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    private static final State[] STATES = State.values();
+
     private VCDParser() {}
 
     public static VCD parse(File vcdFile) throws FileNotFoundException, IOException {
@@ -43,206 +207,241 @@ public class VCDParser {
     public static VCD parse(File vcdFile, Charset charset) throws FileNotFoundException, IOException {
         Objects.requireNonNull(vcdFile);
         Objects.requireNonNull(charset);
-        try (Reader reader = new FileReader(vcdFile)) {
-            return parse(reader);
-        }
+        return parse(new VCDReader(vcdFile, charset));
+    }
+
+    /**
+     * Parses a VCD file using the provided options.<br>
+     * Compressed files are decompressed transparently. Since they can't be
+     * memory-mapped, they are always parsed sequentially, and reading a time
+     * range from them requires decompressing everything before its end.
+     *
+     * @param  vcdFile     the file to parse
+     * @param  charset     charset of the file
+     * @param  options     parser options
+     * @return             parsed VCD
+     * @throws IOException if an I/O error occurs or the file is malformed
+     */
+    public static VCD parse(File vcdFile, Charset charset, ParserOptions options) throws IOException {
+        Objects.requireNonNull(vcdFile);
+        Objects.requireNonNull(charset);
+        Objects.requireNonNull(options);
+        boolean mapped = options.isParallel() || options.isMemoryMapped() || options.getVariableFilter() != null
+                || options.hasTimeRange();
+        if (mapped && CompressionCodecs.detect(vcdFile) == null) return parseMapped(vcdFile, charset, options);
+        VCDReader reader = new VCDReader(new InputStreamReader(
+                CompressionCodecs.openInput(vcdFile, options.isBackgroundDecompression()), charset),
+                options.getVariableFilter());
+        if (options.hasTimeRange()) return parseWindow(reader, options);
+        return options.isColumnar() ? parseColumns(reader) : parse(reader);
+    }
+
+    /**
+     * Parses a UTF-8 VCD file using the provided options
+     *
+     * @param  vcdFile     the file to parse
+     * @param  options     parser options
+     * @return             parsed VCD
+     * @throws IOException if an I/O error occurs or the file is malformed
+     */
+    public static VCD parse(File vcdFile, ParserOptions options) throws IOException {
+        return parse(vcdFile, StandardCharsets.UTF_8, options);
     }
 
     public static VCD parse(Reader vcdReader) throws IOException {
         Objects.requireNonNull(vcdReader);
-        TimeScale timeScale = null;
-        Scope scope = null;
-        String date = null;
-        String version = null;
-        String comment = null;
-        Map<String, VariableDefinition> variables = new HashMap<>();
-        // Read header
-        try (BufferedReader reader = new BufferedReader(vcdReader)) {
+        return parse(new VCDReader(vcdReader));
+    }
+
+    public static VCD parse(String vcdFile) throws FileNotFoundException, IOException {
+        return parse(new File(vcdFile));
+    }
+
+    public static VCD parse(String vcdFile, Charset charset) throws FileNotFoundException, IOException {
+        return parse(new File(vcdFile), charset);
+    }
+
+    private static VCD createVCD(VCDReader header, ScopeTree scopeTree, Map<Long, List<ChangeEntry<?>>> changes,
+            Map<String, VariableDefinition> variables) {
+        VCD vcd = new VCD(header.getDate(), header.getVersion(), header.getComment(), header.getScope(),
+                header.getTimeScale(), changes, variables);
+        vcd.setScopeTree(scopeTree);
+        return vcd;
+    }
+
+    private static VCD createVCD(VCDReader header, ScopeTree scopeTree, ValueChangeColumns columns) {
+        VCD vcd = new VCD(header.getDate(), header.getVersion(), header.getComment(), header.getScope(),
+                header.getTimeScale(), columns);
+        vcd.setScopeTree(scopeTree);
+        return vcd;
+    }
+
+    private static VCD parse(VCDReader reader) throws IOException {
+        try (reader) {
+            Map<Long, List<ChangeEntry<?>>> changesMap = new LinkedHashMap<>();
             while (true) {
-                readUntilToken(reader, '$');
-                String tag = readUntilSpace(reader).trim().toLowerCase();
-                if ("dumpvars".equals(tag)) break;
-                String data = formatData(readUntilTag(reader, "end").trim().replace("\n", " ").replace("\r", " "));
-                switch (tag) {
-                    case "var" -> {
-                        String[] split = data.split(" ");
-                        String typeName = split[0];
-                        String bitsStr = split[1];
-                        String key = split[2];
-                        String name = split[3];
-
-                        VariableDefinition.VarType type;
-                        try {
-                            type = VariableDefinition.VarType.valueOf(typeName.toUpperCase());
-                        } catch (Exception e) {
-                            throw new IOException(String
-                                    .format("Inalid variable type \"%s\" for variable \"%s\". Only \"%s\" is supported.",
-                                            typeName, name,
-                                            VariableDefinition.VarType.values()[0].name().toLowerCase()));
-                        }
-
-                        byte bitsCount;
-                        try {
-                            bitsCount = Byte.parseByte(bitsStr);
-                            if (bitsCount < 1) throw new IllegalStateException();
-                        } catch (Exception e) {
-                            throw new IOException("Invalid bits count: " + bitsStr);
-                        }
-
-                        variables.put(key, new VariableDefinition(key, type, bitsCount, name));
-                    }
-                    case "date" -> date = data;
-                    case "version" -> version = data;
-                    case "comment" -> comment = data;
-                    case "scope" -> {
-                        String[] split = data.split(" ");
-                        String typeName = split[0];
-                        Type type;
-                        try {
-                            type = Type.valueOf(typeName.toUpperCase());
-                        } catch (Exception e) {
-                            throw new IOException(String
-                                    .format("Invalid scope type \"%s\". Only \"%s\" is supported", typeName,
-                                            Type.values()[0].name().toLowerCase()));
-                        }
-                        String name = String.join(" ", Arrays.copyOfRange(split, 1, split.length));
-                        scope = new Scope(type, name);
-                    }
-                    case "timescale" -> {
-                        TimeScaleUnit timeScaleUnit = TimeScaleUnit.parseTimeUnit(data);
-                        long timeScaleValue;
-                        try {
-                            timeScaleValue = Long
-                                    .parseLong(data.substring(0, data.length() - timeScaleUnit.getName().length()));
-                            if (timeScaleValue < 0) throw new IllegalStateException();
-                        } catch (Exception e) {
-                            throw new IOException("Invalid timescale value \"" + data + "\"");
-                        }
-                        timeScale = new TimeScale(timeScaleUnit, timeScaleValue);
-                    }
-                    default -> {}
-                }
+                Map.Entry<Long, List<ChangeEntry<?>>> entry = reader.nextChanges();
+                if (entry == null) break;
+                changesMap.put(entry.getKey(), entry.getValue());
             }
-            if (timeScale == null) throw new IOException("Timescale is missing from the VCD file");
-            if (scope == null) throw new IOException("Scope is missing from the VCD file");
-            // Begin reading dumpvars
-            List<ChangeEntry<?>> entries = new ArrayList<>();
-            Map<Long, List<ChangeEntry<?>>> changesMap = new LinkedHashMap<>();
+            return createVCD(reader, reader.getScopeTree(), changesMap,
+                    new HashMap<>(reader.getVariableDefinitions()));
+        }
+    }
+
+    private static VCD parseColumns(VCDReader reader) throws IOException {
+        try (reader) {
+            ValueChangeColumns.Builder builder = new ValueChangeColumns.Builder();
+            for (VariableDefinition variable : reader.getVariableDefinitions().values()) builder.addVariable(variable);
             while (true) {
-                String line = reader.readLine();
-                if (line == null) break;
-                if (line.isBlank() || line.startsWith("$")) continue;
-                if (line.startsWith("#")) {
-                    try {
-                        long timestamp = Long.parseLong(line.substring(1));
-                        List<ChangeEntry<?>> nl = new ArrayList<>(entries);
-                        entries.clear();
-                        changesMap.put(timestamp, nl);
-                    } catch (Exception e) {
-                        throw new IOException("Invalid timestamp in line " + line);
+                Map.Entry<Long, List<ChangeEntry<?>>> entry = reader.nextChanges();
+                if (entry == null) break;
+                long timestamp = entry.getKey();
+                builder.addTimestamp(timestamp);
+                try {
+                    for (ChangeEntry<?> change : entry.getValue()) {
+                        builder.addChange(builder.indexOf(change.getVariable().getIdentifier()), timestamp, change);
                     }
-                } else if (line.startsWith("b")) {
-                    int ix = line.indexOf(' ');
-                    if (ix < 0) throw new IOException("Invalid multibit variable found: " + line);
-                    String bits = line.substring(1, ix).toLowerCase();
-                    String key = line.substring(ix + 1);
-                    VariableDefinition variable = variables.get(key);
-                    if (variable == null) throw new IOException(
-                            String.format("No variable bound to string \"%s\" in line: %s", key, line));
-                    int value;
-                    try {
-                        if (bits.equals("x".repeat(bits.length()))) {
-                            value = MultibitChangeEntry.UNDEFINED;
-                        } else value = Integer.parseInt(bits, 2);
-                    } catch (Exception e) {
-                        throw new IOException("Invalid multibit value for variable on line: " + line);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid value change before timestamp " + timestamp, e);
+                }
+            }
+            return createVCD(reader, reader.getScopeTree(), builder.build());
+        }
+    }
+
+    private static VCD parseMapped(File vcdFile, Charset charset, ParserOptions options) throws IOException {
+        try (FileChannel channel = FileChannel.open(vcdFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = channel.map(MapMode.READ_ONLY, 0, Math.min(size, MappedVCDScanner.WINDOW_SIZE));
+            int bodyStart = MappedVCDScanner.findBodyStart(head);
+            try (VCDReader header = MappedVCDScanner.readHeader(head, bodyStart, charset)) {
+                Map<String, VariableDefinition> variables = new HashMap<>(header.getVariableDefinitions());
+                Predicate<VariableDefinition> filter = ParserOptions.Selection.resolve(options.getVariableFilter(),
+                        header.getScopeTree());
+                IdentifierTable ids = new IdentifierTable(variables.values(), filter);
+                if (filter != null) variables.values().removeIf(filter.negate());
+                ScopeTree scopeTree = filter == null ? header.getScopeTree() : header.getScopeTree().filter(filter);
+
+                long start = bodyStart;
+                long end = size;
+                List<ChangeEntry<?>> initial = List.of();
+                if (options.hasTimeRange()) {
+                    VCDIndex index = options.isSeekIndex() ? VCDIndex.open(vcdFile, charset) : null;
+                    long startTime = options.getStartTime();
+                    long endTime = options.getEndTime();
+                    long from = index == null ? bodyStart : index.floorOffset(endTime, true, bodyStart);
+                    long last = MappedVCDScanner.findTimestamp(channel, from, size, endTime, true);
+                    end = last < 0 ? bodyStart : MappedVCDScanner.skipLine(channel, last, size);
+                    from = index == null ? bodyStart : index.floorOffset(startTime, false, bodyStart);
+                    long before = MappedVCDScanner.findTimestamp(channel, from, end, startTime, false);
+                    if (before >= 0) {
+                        // Changes stored under the first timestamp of the range follow the last line before it
+                        start = MappedVCDScanner.skipLine(channel, before, size);
+                        // Variables not changing between the checkpoint and the range keep their checkpoint values
+                        StateSink state = new StateSink(variables.values(),
+                                index == null ? null : index.restore(startTime, header.getVariableDefinitions()));
+                        MappedVCDScanner.reverseScan(channel, from, before, ids, state, state::isComplete);
+                        initial = state.getChanges();
                     }
-                    entries.add(new MultibitChangeEntry(variable, value));
+                    end = Math.max(start, end);
+                }
+
+                if (options.isColumnar() && !options.isParallel()) {
+                    ColumnSink sink = new ColumnSink(variables.values());
+                    for (ChangeEntry<?> change : initial) replay(change, sink);
+                    MappedVCDScanner.scan(channel, start, end, ids, sink);
+                    return createVCD(header, scopeTree, sink.builder.build());
+                }
+
+                List<ChunkSink> chunks = new ArrayList<>();
+                if (options.isParallel()) {
+                    chunks.addAll(parseChunks(channel, start, end, ids, options.getPool()));
                 } else {
-                    char c = Character.toLowerCase(line.charAt(0));
-                    String key = line.substring(1);
-                    VariableDefinition variable = variables.get(key);
-                    if (variable == null) throw new IOException(
-                            String.format("No variable bound to string \"%s\" in line: %s", key, line));
-                    State state = switch (c) {
-                        case '0' -> State.LOW;
-                        case '1' -> State.HIGH;
-                        case 'x' -> State.UNDEFINED;
-                        case 'z' -> State.FLOATING;
-                        default -> throw new IOException(String.format("Invalid state \"%s\" on line: %s", c, line));
-                    };
-                    entries.add(new BinaryChangeEntry(variable, state));
+                    chunks.add(parseChunk(channel, start, end, ids));
                 }
-            }
-            if (!changesMap.containsKey(0l)) {
-                List<ChangeEntry<?>> nl = new ArrayList<>();
-                for (VariableDefinition def : variables.values()) {
-                    nl
-                            .add(def.getBitCount() == 1 ? new BinaryChangeEntry(def, State.UNDEFINED)
-                                    : new MultibitChangeEntry(def, MultibitChangeEntry.UNDEFINED));
+
+                // Stitch chunks together. Changes are stored under the timestamp that follows them
+                Map<Long, List<ChangeEntry<?>>> changes = new LinkedHashMap<>();
+                List<ChangeEntry<?>> pending = new ArrayList<>(initial);
+                for (ChunkSink chunk : chunks) {
+                    pending.addAll(chunk.leading);
+                    for (int i = 0; i < chunk.timestamps.size(); i++) {
+                        changes.put(chunk.timestamps.get(i), pending);
+                        pending = chunk.blocks.get(i);
+                    }
                 }
+                if (options.isColumnar())
+                    return createVCD(header, scopeTree, ValueChangeColumns.of(changes, variables));
+                return createVCD(header, scopeTree, changes, variables);
             }
-            return new VCD(date, version, comment, scope, timeScale, changesMap, variables);
         }
     }
 
-    public static VCD parse(String vcdFile) throws FileNotFoundException, IOException {
-        return parse(new File(vcdFile));
-    }
-
-    public static VCD parse(String vcdFile, Charset charset) throws FileNotFoundException, IOException {
-        return parse(new File(vcdFile), charset);
+    private static ChunkSink parseChunk(FileChannel channel, long from, long to, IdentifierTable ids)
+            throws IOException {
+        ChunkSink sink = new ChunkSink();
+        MappedVCDScanner.scan(channel, from, to, ids, sink);
+        return sink;
     }
 
-    private static String formatData(String data) {
-        StringBuilder builder = new StringBuilder();
-        for (char c : data.toCharArray()) {
-            if (Character.isWhitespace(c)) builder.append(' ');
-            else builder.append(c);
+    private static List<ChunkSink> parseChunks(FileChannel channel, long from, long to, IdentifierTable ids,
+            ForkJoinPool pool) throws IOException {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (to - from) / (pool.getParallelism() * 4L));
+        List<ForkJoinTask<ChunkSink>> tasks = new ArrayList<>();
+        long start = from;
+        while (start < to) {
+            long end = start + chunkSize >= to ? to : MappedVCDScanner.findLine(channel, start + chunkSize, to, '#');
+            long chunkStart = start;
+            tasks.add(pool.submit(() -> parseChunk(channel, chunkStart, end, ids)));
+            start = end;
         }
-        String formatted = builder.toString();
-        while (formatted.contains("  ")) formatted = formatted.replace("  ", " ");
-        return formatted;
-    }
 
-    private static String readUntilSpace(Reader reader) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        while (true) {
-            int read = reader.read();
-            if (read < 0) throw new IOException("End of stream");
-            char c = (char) read;
-            if (Character.isWhitespace(c)) break;
-            builder.append(c);
+        List<ChunkSink> chunks = new ArrayList<>();
+        try {
+            for (ForkJoinTask<ChunkSink> task : tasks) chunks.add(task.get());
+        } catch (InterruptedException e) {
+            tasks.forEach(task -> task.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for parser tasks");
+        } catch (ExecutionException e) {
+            tasks.forEach(task -> task.cancel(true));
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
         }
-        return builder.toString();
+        return chunks;
     }
 
-    private static String readUntilTag(Reader reader, String tag) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        while (true) {
-            int read = reader.read();
-            if (read < 0) throw new IOException("End of stream");
-            char c = (char) read;
-            builder.append(c);
-            if (builder.toString().endsWith("$" + tag)) {
-                builder = new StringBuilder(builder.substring(0, builder.length() - tag.length() - 1));
-                break;
+    private static VCD parseWindow(VCDReader reader, ParserOptions options) throws IOException {
+        try (reader) {
+            Map<VariableDefinition, ChangeEntry<?>> state = new LinkedHashMap<>();
+            Map<Long, List<ChangeEntry<?>>> changes = new LinkedHashMap<>();
+            while (true) {
+                Map.Entry<Long, List<ChangeEntry<?>>> entry = reader.nextChanges();
+                if (entry == null || entry.getKey() > options.getEndTime()) break;
+                if (entry.getKey() < options.getStartTime()) {
+                    for (ChangeEntry<?> change : entry.getValue()) state.put(change.getVariable(), change);
+                    continue;
+                }
+                List<ChangeEntry<?>> list = entry.getValue();
+                if (changes.isEmpty() && !state.isEmpty()) {
+                    list = new ArrayList<>(state.values());
+                    list.addAll(entry.getValue());
+                }
+                changes.put(entry.getKey(), list);
             }
+            Map<String, VariableDefinition> variables = new HashMap<>(reader.getVariableDefinitions());
+            if (options.isColumnar())
+                return createVCD(reader, reader.getScopeTree(), ValueChangeColumns.of(changes, variables));
+            return createVCD(reader, reader.getScopeTree(), changes, variables);
         }
-        return builder.toString();
     }
 
-    private static String readUntilToken(Reader reader, char token) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        while (true) {
-            int read = reader.read();
-            if (read < 0) throw new IOException("End of stream");
-            char c = (char) read;
-            if (c == token) {
-                break;
-            }
-            builder.append(c);
-        }
-        return builder.toString();
+    private static void replay(ChangeEntry<?> change, ValueChangeSink sink) throws IOException {
+        if (change instanceof BinaryChangeEntry binary) sink.binaryChange(binary.getVariable(), binary.getValue());
+        else if (change instanceof MultibitChangeEntry multibit)
+            sink.multibitChange(multibit.getVariable(), multibit.getValue());
+        else if (change instanceof VectorChangeEntry vector) sink.vectorChange(vector.getVariable(), vector.getValue());
     }
 }
@@ -0,0 +1,465 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import io.github.defective4.dsp.vcd4j.data.BinaryChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.BitVector;
+import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.Scope;
+import io.github.defective4.dsp.vcd4j.data.Scope.Type;
+import io.github.defective4.dsp.vcd4j.data.ScopeTree;
+import io.github.defective4.dsp.vcd4j.data.State;
+import io.github.defective4.dsp.vcd4j.data.TimeScale;
+import io.github.defective4.dsp.vcd4j.data.TimeScale.TimeScaleUnit;
+import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.data.VectorChangeEntry;
+
+/**
+ * Pull-based, streaming reader of VCD files.
+ * <p>
+ * Unlike {@link VCDParser}, this class never materializes the whole dump. The
+ * header (time scale, scope tree and variable definitions) is read when the reader
+ * is constructed, after which value changes are read lazily, one timestamp at a
+ * time. Memory usage is therefore bounded by the size of a single value change
+ * block, regardless of the file size.
+ * </p>
+ * Each element returned by {@link #next()} has the same form as an entry of
+ * {@link VCD#getValueChanges()}, so a fully read VCDReader yields exactly what
+ * {@link VCDParser#parse(Reader)} would have stored in the resulting
+ * {@link VCD}.
+ */
+public class VCDReader implements Closeable, Iterator<Map.Entry<Long, List<ChangeEntry<?>>>> {
+    private boolean closed;
+    private final String date, version, comment;
+    private Map.Entry<Long, List<ChangeEntry<?>>> next;
+    private List<ChangeEntry<?>> pending = new ArrayList<>();
+    private final BufferedReader reader;
+    private final Scope scope;
+    private final ScopeTree scopeTree;
+    private final Set<String> skipped = new HashSet<>();
+    private final TimeScale timeScale;
+    private final Map<String, VariableDefinition> variables;
+
+    /**
+     * Opens a VCD file for streaming using UTF-8 charset.<br>
+     * Compressed files are decompressed transparently, see
+     * {@link #VCDReader(File, Charset)}.
+     *
+     * @param  vcdFile     the file to read
+     * @throws IOException if the file couldn't be opened or its header is
+     *                     malformed
+     */
+    public VCDReader(File vcdFile) throws IOException {
+        this(vcdFile, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a VCD file for streaming.<br>
+     * If the file is compressed with one of
+     * {@link CompressionCodecs#getCodecs()}, it's decompressed on a background
+     * thread while being read.
+     *
+     * @param  vcdFile     the file to read
+     * @param  charset     charset of the file
+     * @throws IOException if the file couldn't be opened or its header is
+     *                     malformed
+     */
+    public VCDReader(File vcdFile, Charset charset) throws IOException {
+        this(new InputStreamReader(CompressionCodecs.openInput(Objects.requireNonNull(vcdFile), true),
+                Objects.requireNonNull(charset)));
+    }
+
+    /**
+     * Constructs a new VCD reader and reads the header from the supplied reader.
+     * <br>
+     * The supplied reader is closed when this reader is closed, or when the
+     * header couldn't be read.
+     *
+     * @param  vcdReader   source of VCD data
+     * @throws IOException if the header is malformed or an I/O error occurs
+     */
+    public VCDReader(Reader vcdReader) throws IOException {
+        this(vcdReader, null);
+    }
+
+    /**
+     * Constructs a new VCD reader, reading only changes of selected variables.
+     * <br>
+     * Variables rejected by the filter are left out of
+     * {@link #getVariableDefinitions()} and {@link #getScopeTree()}, and their
+     * changes are skipped without decoding their values.<br>
+     * The supplied reader is closed when this reader is closed, or when the
+     * header couldn't be read.
+     *
+     * @param  vcdReader   source of VCD data
+     * @param  filter      predicate selecting variables to read, or
+     *                     <code>null</code> to read all of them
+     * @throws IOException if the header is malformed or an I/O error occurs
+     */
+    public VCDReader(Reader vcdReader, Predicate<VariableDefinition> filter) throws IOException {
+        Objects.requireNonNull(vcdReader);
+        reader = vcdReader instanceof BufferedReader buffered ? buffered : new BufferedReader(vcdReader);
+        TimeScale timeScale = null;
+        ScopeTree.Builder scopes = new ScopeTree.Builder();
+        String date = null;
+        String version = null;
+        String comment = null;
+        Map<String, VariableDefinition> variables = new HashMap<>();
+        ScopeTree scopeTree;
+        try {
+            while (true) {
+                readUntilToken(reader, '$');
+                String tag = readUntilSpace(reader).trim().toLowerCase();
+                if ("dumpvars".equals(tag)) break;
+                String data = formatData(readUntilTag(reader, "end").trim().replace("\n", " ").replace("\r", " "));
+                switch (tag) {
+                    case "var" -> {
+                        String[] split = data.split(" ");
+                        String typeName = split[0];
+                        String bitsStr = split[1];
+                        String key = split[2];
+                        String name = split[3];
+
+                        VariableDefinition.VarType type;
+                        try {
+                            type = VariableDefinition.VarType.valueOf(typeName.toUpperCase());
+                        } catch (Exception e) {
+                            throw new IOException(String
+                                    .format("Inalid variable type \"%s\" for variable \"%s\". Only \"%s\" is supported.",
+                                            typeName, name,
+                                            VariableDefinition.VarType.values()[0].name().toLowerCase()));
+                        }
+
+                        int bitsCount;
+                        try {
+                            bitsCount = Integer.parseInt(bitsStr);
+                            if (bitsCount < 1) throw new IllegalStateException();
+                        } catch (Exception e) {
+                            throw new IOException("Invalid bits count: " + bitsStr);
+                        }
+
+                        VariableDefinition variable = variables.get(key);
+                        if (variable != null) {
+                            // Aliases refer to the first declaration of their identifier
+                            scopes.addAlias(name, variable);
+                        } else {
+                            variable = new VariableDefinition(key, type, bitsCount, name);
+                            variables.put(key, variable);
+                            scopes.addVariable(variable);
+                        }
+                    }
+                    case "date" -> date = data;
+                    case "version" -> version = data;
+                    case "comment" -> comment = data;
+                    case "scope" -> {
+                        String[] split = data.split(" ");
+                        String typeName = split[0];
+                        Type type;
+                        try {
+                            type = Type.valueOf(typeName.toUpperCase());
+                        } catch (Exception e) {
+                            throw new IOException(String.format("Invalid scope type \"%s\"", typeName));
+                        }
+                        String name = String.join(" ", Arrays.copyOfRange(split, 1, split.length));
+                        scopes.beginScope(new Scope(type, name));
+                    }
+                    case "upscope" -> {
+                        if (scopes.getDepth() == 0) throw new IOException("$upscope without a matching $scope");
+                        scopes.endScope();
+                    }
+                    case "timescale" -> {
+                        TimeScaleUnit timeScaleUnit = TimeScaleUnit.parseTimeUnit(data);
+                        long timeScaleValue;
+                        try {
+                            timeScaleValue = Long
+                                    .parseLong(data.substring(0, data.length() - timeScaleUnit.getName().length()));
+                            if (timeScaleValue < 0) throw new IllegalStateException();
+                        } catch (Exception e) {
+                            throw new IOException("Invalid timescale value \"" + data + "\"");
+                        }
+                        timeScale = new TimeScale(timeScaleUnit, timeScaleValue);
+                    }
+                    default -> {}
+                }
+            }
+            if (timeScale == null) throw new IOException("Timescale is missing from the VCD file");
+            scopeTree = scopes.build();
+            if (scopeTree.getTopScope() == null) throw new IOException("Scope is missing from the VCD file");
+        } catch (IOException | RuntimeException e) {
+            try {
+                reader.close();
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        }
+        this.date = date;
+        this.version = version;
+        this.comment = comment;
+        this.timeScale = timeScale;
+        scope = scopeTree.getTopScope();
+        if (filter != null) {
+            Predicate<VariableDefinition> accepted = ParserOptions.Selection.resolve(filter, scopeTree);
+            variables.values().removeIf(variable -> {
+                if (accepted.test(variable)) return false;
+                skipped.add(variable.getIdentifier());
+                return true;
+            });
+            scopeTree = scopeTree.filter(accepted);
+        }
+        this.scopeTree = scopeTree;
+        this.variables = Collections.unmodifiableMap(variables);
+    }
+
+    /**
+     * Closes this reader and the underlying source
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        next = null;
+        pending = null;
+        reader.close();
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    /**
+     * @return the first top-level scope declared in the header
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * @return tree of all scopes declared in the header, with the variables
+     *         declared in each of them
+     */
+    public ScopeTree getScopeTree() {
+        return scopeTree;
+    }
+
+    public TimeScale getTimeScale() {
+        return timeScale;
+    }
+
+    /**
+     * @return an unmodifiable map of variable definitions read from the header,
+     *         keyed by their identifiers. If an identifier is declared more than
+     *         once, its first declaration is used, and the others are aliases in
+     *         {@link #getScopeTree()}
+     */
+    public Map<String, VariableDefinition> getVariableDefinitions() {
+        return variables;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if an I/O error occurs or the value change
+     *                              section is malformed
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            return readNext() != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if an I/O error occurs or the value change
+     *                              section is malformed
+     */
+    @Override
+    public Map.Entry<Long, List<ChangeEntry<?>>> next() {
+        try {
+            Map.Entry<Long, List<ChangeEntry<?>>> entry = readNext();
+            if (entry == null) throw new NoSuchElementException();
+            next = null;
+            return entry;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next block of value changes.<br>
+     * This is the checked counterpart of {@link #next()}.
+     *
+     * @return             next timestamp along with all changes stored under it,
+     *                     or <code>null</code> if the end of the file was reached
+     * @throws IOException if an I/O error occurs or the value change section is
+     *                     malformed
+     */
+    public Map.Entry<Long, List<ChangeEntry<?>>> nextChanges() throws IOException {
+        Map.Entry<Long, List<ChangeEntry<?>>> entry = readNext();
+        next = null;
+        return entry;
+    }
+
+    /**
+     * @return the decoded change, or <code>null</code> if it belongs to a
+     *         skipped variable
+     */
+    private ChangeEntry<?> parseChange(String line) throws IOException {
+        if (line.startsWith("b")) {
+            int ix = line.indexOf(' ');
+            if (ix < 0) throw new IOException("Invalid multibit variable found: " + line);
+            String key = line.substring(ix + 1);
+            VariableDefinition variable = variables.get(key);
+            if (variable == null) {
+                if (skipped.contains(key)) return null;
+                throw new IOException(String.format("No variable bound to string \"%s\" in line: %s", key, line));
+            }
+            if (variable.isWide()) {
+                try {
+                    return new VectorChangeEntry(variable, BitVector.parse(line, 1, ix, variable.getBitCount()));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid multibit value for variable on line: " + line, e);
+                }
+            }
+            String bits = line.substring(1, ix).toLowerCase();
+            int value;
+            try {
+                if (bits.equals("x".repeat(bits.length()))) {
+                    value = MultibitChangeEntry.UNDEFINED;
+                } else if (bits.indexOf('x') >= 0 || bits.indexOf('z') >= 0) {
+                    return new VectorChangeEntry(variable, BitVector.parse(bits, variable.getBitCount()));
+                } else value = Integer.parseInt(bits, 2);
+            } catch (Exception e) {
+                throw new IOException("Invalid multibit value for variable on line: " + line);
+            }
+            return MultibitChangeEntry.of(variable, value);
+        }
+        char c = Character.toLowerCase(line.charAt(0));
+        String key = line.substring(1);
+        VariableDefinition variable = variables.get(key);
+        if (variable == null) {
+            if (skipped.contains(key)) return null;
+            throw new IOException(String.format("No variable bound to string \"%s\" in line: %s", key, line));
+        }
+        State state = switch (c) {
+            case '0' -> State.LOW;
+            case '1' -> State.HIGH;
+            case 'x' -> State.UNDEFINED;
+            case 'z' -> State.FLOATING;
+            default -> throw new IOException(String.format("Invalid state \"%s\" on line: %s", c, line));
+        };
+        return BinaryChangeEntry.of(variable, state);
+    }
+
+    private Map.Entry<Long, List<ChangeEntry<?>>> readNext() throws IOException {
+        if (next != null) return next;
+        if (closed) return null;
+        while (true) {
+            String line = reader.readLine();
+            if (line == null) {
+                // Changes following the last timestamp are not bound to any time
+                pending.clear();
+                return null;
+            }
+            if (line.isBlank() || line.startsWith("$")) continue;
+            if (line.startsWith("#")) {
+                long timestamp;
+                try {
+                    timestamp = Long.parseLong(line.substring(1));
+                } catch (Exception e) {
+                    throw new IOException("Invalid timestamp in line " + line);
+                }
+                next = Map.entry(timestamp, pending);
+                pending = new ArrayList<>();
+                return next;
+            }
+            ChangeEntry<?> change = parseChange(line);
+            if (change != null) pending.add(change);
+        }
+    }
+
+    private static String formatData(String data) {
+        StringBuilder builder = new StringBuilder();
+        for (char c : data.toCharArray()) {
+            if (Character.isWhitespace(c)) builder.append(' ');
+            else builder.append(c);
+        }
+        String formatted = builder.toString();
+        while (formatted.contains("  ")) formatted = formatted.replace("  ", " ");
+        return formatted;
+    }
+
+    private static String readUntilSpace(Reader reader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            int read = reader.read();
+            if (read < 0) throw new IOException("End of stream");
+            char c = (char) read;
+            if (Character.isWhitespace(c)) break;
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static String readUntilTag(Reader reader, String tag) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            int read = reader.read();
+            if (read < 0) throw new IOException("End of stream");
+            char c = (char) read;
+            builder.append(c);
+            if (builder.toString().endsWith("$" + tag)) {
+                builder = new StringBuilder(builder.substring(0, builder.length() - tag.length() - 1));
+                break;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String readUntilToken(Reader reader, char token) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            int read = reader.read();
+            if (read < 0) throw new IOException("End of stream");
+            char c = (char) read;
+            if (c == token) {
+                break;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
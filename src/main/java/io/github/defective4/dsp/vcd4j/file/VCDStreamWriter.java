@@ -0,0 +1,542 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.github.defective4.dsp.vcd4j.data.BinaryChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.BitVector;
+import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.Scope;
+import io.github.defective4.dsp.vcd4j.data.ScopeTree;
+import io.github.defective4.dsp.vcd4j.data.State;
+import io.github.defective4.dsp.vcd4j.data.TimeScale;
+import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.data.VectorChangeEntry;
+
+/**
+ * Incremental writer of VCD files.
+ * <p>
+ * Unlike {@link VCDWriter}, this class doesn't need a complete {@link VCD}.
+ * The header is written first, after which value changes are appended one
+ * timestamp at a time and written out immediately, so memory usage doesn't
+ * grow with the length of the dump.
+ * </p>
+ * <p>
+ * Value changes are encoded directly into a reusable byte buffer, which is
+ * pushed to the destination in large blocks. Identifiers are encoded once,
+ * when the header is written, so appending changes doesn't allocate.
+ * </p>
+ * <p>
+ * Syntax of the file is written as ASCII bytes, so only charsets encoding
+ * ASCII characters the same way, such as UTF-8 or ISO-8859-1, are supported.
+ * </p>
+ * Following the convention of {@link VCD#getValueChanges()}, changes passed to
+ * {@link #append(long, List)} are written before the timestamp they're stored
+ * under.
+ */
+public class VCDStreamWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String INDENT = "  ";
+    private static final byte[] STATE_BYTES = new byte[State.values().length];
+    /**
+     * Digits of vector bits, indexed by their unknown and value plane bits
+     */
+    private static final byte[] VECTOR_BYTES = { '0', '1', 'z', 'x' };
+
+    static {
+        for (State state : State.values()) STATE_BYTES[state.ordinal()] = (byte) state.getChar();
+    }
+
+    private boolean autoFlush;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+    private final WritableByteChannel channel;
+    private final Charset charset;
+    private final CharBuffer chars;
+    private boolean closed;
+    private final CharsetDecoder decoder;
+    private boolean headerWritten;
+    private final Map<String, byte[]> identifiers = new HashMap<>();
+    private long lastTimestamp;
+    private int position;
+    private final OutputStream stream;
+    private boolean timestampWritten;
+    private final Writer writer;
+
+    /**
+     * Opens a file for writing using UTF-8 charset
+     *
+     * @param  file        the file to write to
+     * @throws IOException if the file couldn't be opened
+     */
+    public VCDStreamWriter(File file) throws IOException {
+        this(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a file for writing.<br>
+     * If the file name ends with an extension of one of
+     * {@link CompressionCodecs#getCodecs()}, such as <code>.gz</code>, the file
+     * is compressed.
+     *
+     * @param  file                     the file to write to
+     * @param  charset                  charset of the file
+     * @throws IOException              if the file couldn't be opened
+     * @throws IllegalArgumentException if the charset is not ASCII-compatible
+     */
+    public VCDStreamWriter(File file, Charset charset) throws IOException {
+        this(openOutput(file, charset), charset);
+    }
+
+    /**
+     * Constructs a new stream writer writing UTF-8 data.<br>
+     * The supplied stream is closed when this writer is closed.
+     *
+     * @param stream destination of VCD data
+     */
+    public VCDStreamWriter(OutputStream stream) {
+        this(stream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Constructs a new stream writer.<br>
+     * The supplied stream is closed when this writer is closed.
+     *
+     * @param  stream                   destination of VCD data
+     * @param  charset                  charset used to encode the header and
+     *                                  identifiers
+     * @throws IllegalArgumentException if the charset is not ASCII-compatible
+     */
+    public VCDStreamWriter(OutputStream stream, Charset charset) {
+        this(Objects.requireNonNull(stream), null, null, charset);
+    }
+
+    /**
+     * Constructs a new stream writer writing UTF-8 data.<br>
+     * The supplied channel is closed when this writer is closed.
+     *
+     * @param channel destination of VCD data
+     */
+    public VCDStreamWriter(WritableByteChannel channel) {
+        this(channel, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Constructs a new stream writer.<br>
+     * The supplied channel is closed when this writer is closed.
+     *
+     * @param  channel                  destination of VCD data
+     * @param  charset                  charset used to encode the header and
+     *                                  identifiers
+     * @throws IllegalArgumentException if the charset is not ASCII-compatible
+     */
+    public VCDStreamWriter(WritableByteChannel channel, Charset charset) {
+        this(null, Objects.requireNonNull(channel), null, charset);
+    }
+
+    /**
+     * Constructs a new stream writer.<br>
+     * The supplied writer is closed when this writer is closed.<br>
+     * Data is still encoded into bytes first, and decoded back to characters
+     * when the buffer is flushed. Prefer byte-oriented destinations where
+     * possible.
+     *
+     * @param writer destination of VCD data
+     */
+    public VCDStreamWriter(Writer writer) {
+        this(null, null, Objects.requireNonNull(writer), StandardCharsets.UTF_8);
+    }
+
+    private VCDStreamWriter(OutputStream stream, WritableByteChannel channel, Writer writer, Charset charset) {
+        checkCharset(charset);
+        this.stream = stream;
+        this.channel = channel;
+        this.writer = writer;
+        this.charset = charset;
+        if (writer != null) {
+            decoder = charset
+                    .newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars = CharBuffer.allocate(BUFFER_SIZE);
+        } else {
+            decoder = null;
+            chars = null;
+        }
+    }
+
+    /**
+     * Writes a block of value changes, followed by its timestamp.
+     *
+     * @param  timestamp                timestamp the changes are stored under. It
+     *                                  has to be greater than the previously
+     *                                  appended timestamp
+     * @param  changes                  changes to write
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalStateException    if the header was not written yet
+     * @throws IllegalArgumentException if the timestamp is out of order, or any
+     *                                  of the changes references a variable that
+     *                                  wasn't defined in the header
+     */
+    public void append(long timestamp, List<ChangeEntry<?>> changes) throws IOException {
+        Objects.requireNonNull(changes);
+        checkAppend(timestamp);
+        for (ChangeEntry<?> change : changes) identifier(change.getVariable());
+        for (ChangeEntry<?> change : changes) {
+            if (change instanceof MultibitChangeEntry mb) {
+                writeMultibit(mb.getVariable(), mb.getValue());
+            } else if (change instanceof BinaryChangeEntry bb) {
+                writeBinary(bb.getVariable(), bb.getValue());
+            } else if (change instanceof VectorChangeEntry vb) {
+                writeVector(vb.getVariable(), vb.getValue());
+            } else throw new IllegalStateException("Unrecognized change entry class: " + change.getClass());
+        }
+        writeTimestamp(timestamp);
+    }
+
+    /**
+     * Closes this writer and the underlying destination
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flushBuffer(true);
+        } finally {
+            if (stream != null) stream.close();
+            else if (channel != null) channel.close();
+            else writer.close();
+        }
+    }
+
+    /**
+     * Flushes all written data to the underlying destination
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer(false);
+        if (stream != null) stream.flush();
+        else if (writer != null) writer.flush();
+    }
+
+    public boolean isAutoFlush() {
+        return autoFlush;
+    }
+
+    /**
+     * If set to true, data is flushed after every appended block, so the file can
+     * be read while it's still being written.<br>
+     * <b>Default value:</b> false
+     *
+     * @param autoFlush
+     */
+    public void setAutoFlush(boolean autoFlush) {
+        this.autoFlush = autoFlush;
+    }
+
+    /**
+     * Writes the VCD header
+     *
+     * @param  date                  human readable date of creation, or
+     *                               <code>null</code>
+     * @param  version               human readable version of software that
+     *                               created the VCD, or <code>null</code>
+     * @param  comment               comment, or <code>null</code>
+     * @param  scope                 primary scope of the VCD
+     * @param  timeScale             time scale of the VCD
+     * @param  variables             definitions of all variables that will be
+     *                               used in appended changes
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the header was already written
+     */
+    public void writeHeader(String date, String version, String comment, Scope scope, TimeScale timeScale,
+            Collection<VariableDefinition> variables) throws IOException {
+        writeHeader(date, version, comment, ScopeTree.of(scope, variables), timeScale);
+    }
+
+    /**
+     * Writes the VCD header with nested scopes.<br>
+     * Every variable of the tree is declared in its scope, and may be used in
+     * appended changes.
+     *
+     * @param  date                  human readable date of creation, or
+     *                               <code>null</code>
+     * @param  version               human readable version of software that
+     *                               created the VCD, or <code>null</code>
+     * @param  comment               comment, or <code>null</code>
+     * @param  scopeTree             scopes and variables of the VCD
+     * @param  timeScale             time scale of the VCD
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the header was already written
+     */
+    public void writeHeader(String date, String version, String comment, ScopeTree scopeTree, TimeScale timeScale)
+            throws IOException {
+        writeHeader(date, version, comment, scopeTree, timeScale, null, List.of());
+    }
+
+    /**
+     * Writes the VCD header with the default scope and no date, version or
+     * comment
+     *
+     * @param  timeScale             time scale of the VCD
+     * @param  variables             definitions of all variables that will be
+     *                               used in appended changes
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the header was already written
+     */
+    public void writeHeader(TimeScale timeScale, Collection<VariableDefinition> variables) throws IOException {
+        writeHeader(null, null, null, Scope.DEFAULT, timeScale, variables);
+    }
+
+    /**
+     * Writes the header of an existing VCD
+     */
+    void writeHeader(VCD vcd) throws IOException {
+        writeHeader(vcd.getDate(), vcd.getVersion(), vcd.getComment(), vcd.getScopeTree(), vcd.getTimeScale(),
+                vcd.getScope(), vcd.getVariableDefinitions().values());
+    }
+
+    /**
+     * Writes a single 1-bit change. The caller is responsible for validation.
+     */
+    void writeBinary(VariableDefinition def, State state) throws IOException {
+        byte[] id = identifier(def);
+        ensure(id.length + 2);
+        buffer[position++] = STATE_BYTES[state.ordinal()];
+        System.arraycopy(id, 0, buffer, position, id.length);
+        position += id.length;
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * Writes a single multi-bit change. The caller is responsible for validation.
+     */
+    void writeMultibit(VariableDefinition def, int value) throws IOException {
+        byte[] id = identifier(def);
+        int bits = def.getBitCount();
+        ensure(bits + id.length + 3);
+        buffer[position++] = 'b';
+        if (value == MultibitChangeEntry.UNDEFINED) {
+            for (int i = 0; i < bits; i++) buffer[position++] = 'x';
+        } else {
+            for (int i = bits - 1; i >= 0; i--) buffer[position++] = (byte) (i < 32 ? '0' + (value >>> i & 1) : '0');
+        }
+        buffer[position++] = ' ';
+        System.arraycopy(id, 0, buffer, position, id.length);
+        position += id.length;
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * Writes a timestamp, closing the current block of changes
+     *
+     * @throws IllegalStateException    if the header was not written yet
+     * @throws IllegalArgumentException if the timestamp is out of order
+     */
+    void writeTimestamp(long timestamp) throws IOException {
+        checkAppend(timestamp);
+        lastTimestamp = timestamp;
+        timestampWritten = true;
+        ensure(22);
+        buffer[position++] = '#';
+        // Digits are taken from the negated timestamp, so Long.MIN_VALUE doesn't overflow
+        if (timestamp < 0) buffer[position++] = '-';
+        else timestamp = -timestamp;
+        int digits = 1;
+        for (long rest = timestamp / 10; rest < 0; rest /= 10) digits++;
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' - timestamp % 10);
+            timestamp /= 10;
+        }
+        position += digits;
+        buffer[position++] = '\n';
+        if (autoFlush) flush();
+    }
+
+    /**
+     * Writes a single vector change. The caller is responsible for validation.
+     */
+    void writeVector(VariableDefinition def, BitVector value) throws IOException {
+        byte[] id = identifier(def);
+        ensure(1);
+        buffer[position++] = 'b';
+        for (int word = value.getWordCount() - 1; word >= 0; word--) {
+            long values = value.getValueWord(word);
+            long unknowns = value.getUnknownWord(word);
+            int top = word == value.getWordCount() - 1 ? value.getWidth() - 1 & 63 : 63;
+            ensure(top + 1);
+            for (int i = top; i >= 0; i--)
+                buffer[position++] = VECTOR_BYTES[(int) (unknowns >>> i & 1) << 1 | (int) (values >>> i & 1)];
+        }
+        ensure(id.length + 2);
+        buffer[position++] = ' ';
+        System.arraycopy(id, 0, buffer, position, id.length);
+        position += id.length;
+        buffer[position++] = '\n';
+    }
+
+    private void checkAppend(long timestamp) {
+        if (closed) throw new IllegalStateException("Writer is closed");
+        if (!headerWritten) throw new IllegalStateException("Header was not written yet");
+        if (timestampWritten && timestamp <= lastTimestamp) throw new IllegalArgumentException(
+                String.format("Timestamp %s is not greater than previous timestamp %s", timestamp, lastTimestamp));
+    }
+
+    private void ensure(int length) throws IOException {
+        if (position + length > buffer.length) flushBuffer(false);
+    }
+
+    private void flushBuffer(boolean endOfInput) throws IOException {
+        if (stream != null) {
+            stream.write(buffer, 0, position);
+            position = 0;
+        } else if (channel != null) {
+            byteBuffer.clear().limit(position);
+            while (byteBuffer.hasRemaining()) channel.write(byteBuffer);
+            position = 0;
+        } else {
+            byteBuffer.clear().limit(position);
+            while (true) {
+                CoderResult result = decoder.decode(byteBuffer, chars, endOfInput);
+                writer.write(chars.array(), 0, chars.position());
+                chars.clear();
+                if (result.isUnderflow()) break;
+            }
+            if (endOfInput) {
+                decoder.flush(chars);
+                writer.write(chars.array(), 0, chars.position());
+                chars.clear();
+            }
+            // Keep bytes of an incomplete character for the next flush
+            int remaining = byteBuffer.remaining();
+            System.arraycopy(buffer, byteBuffer.position(), buffer, 0, remaining);
+            position = remaining;
+        }
+    }
+
+    private byte[] identifier(VariableDefinition def) {
+        byte[] id = identifiers.get(def.getIdentifier());
+        if (id == null) throw new IllegalArgumentException(
+                String.format("Variable \"%s\" is undefined", def.getIdentifier()));
+        return id;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (position == buffer.length) flushBuffer(false);
+            int length = Math.min(bytes.length - offset, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes the header. Variables not declared by the scope tree are declared in
+     * an additional top-level scope.
+     */
+    private void writeHeader(String date, String version, String comment, ScopeTree scopeTree, TimeScale timeScale,
+            Scope scope, Collection<VariableDefinition> variables) throws IOException {
+        Objects.requireNonNull(scopeTree);
+        Objects.requireNonNull(timeScale);
+        Objects.requireNonNull(variables);
+        if (closed) throw new IllegalStateException("Writer is closed");
+        if (headerWritten) throw new IllegalStateException("Header was already written");
+        headerWritten = true;
+        if (date != null) writeSection("date", date, true);
+        if (version != null) writeSection("version", version, true);
+        if (comment != null) writeSection("comment", comment, true);
+        writeSection("timescale", timeScale.getResolution() + timeScale.getUnit().getName(), false);
+        writeScope(scopeTree.getRoot());
+        List<VariableDefinition> undeclared = variables.stream()
+                .filter(variable -> !identifiers.containsKey(variable.getIdentifier())).toList();
+        if (!undeclared.isEmpty()) {
+            writeSection("scope", scope.getType().name().toLowerCase() + " " + scope.getName(), false);
+            for (VariableDefinition variable : undeclared) writeVariable(variable);
+            writeLine("$upscope $end");
+        }
+        writeLine("$enddefinitions $end");
+        writeLine("$dumpvars");
+        if (autoFlush) flush();
+    }
+
+    private void writeLine(String line) throws IOException {
+        writeBytes(line.getBytes(charset));
+        ensure(1);
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * Writes declarations of a scope, its variables and nested scopes
+     */
+    private void writeScope(ScopeTree.Node node) throws IOException {
+        if (!node.isRoot()) writeSection("scope",
+                node.getScope().getType().name().toLowerCase() + " " + node.getScope().getName(), false);
+        for (int i = 0; i < node.getVariables().size(); i++)
+            writeVariable(node.getVariables().get(i), node.getVariableNames().get(i));
+        for (ScopeTree.Node child : node.getChildren()) writeScope(child);
+        if (!node.isRoot()) writeLine("$upscope $end");
+    }
+
+    private void writeSection(String tag, String data, boolean indent) throws IOException {
+        if (indent) {
+            writeLine("$" + tag);
+            writeLine(INDENT + data);
+            writeLine("$end");
+        } else {
+            writeLine("$" + tag + " " + data + " $end");
+        }
+    }
+
+    private void writeVariable(VariableDefinition variable) throws IOException {
+        writeVariable(variable, variable.getName());
+    }
+
+    private void writeVariable(VariableDefinition variable, String name) throws IOException {
+        identifiers.put(variable.getIdentifier(), variable.getIdentifier().getBytes(charset));
+        writeSection("var", variable.getType().name().toLowerCase() + " " + variable.getBitCount() + " "
+                + variable.getIdentifier() + " " + name, false);
+    }
+
+    /**
+     * Checks if the charset encodes printable ASCII characters and line feeds as
+     * single ASCII bytes
+     */
+    private static void checkCharset(Charset charset) {
+        Objects.requireNonNull(charset);
+        StringBuilder ascii = new StringBuilder("\n");
+        for (char c = ' '; c < 127; c++) ascii.append(c);
+        String text = ascii.toString();
+        if (!charset.canEncode() || !Arrays.equals(text.getBytes(charset), text.getBytes(StandardCharsets.US_ASCII)))
+            throw new IllegalArgumentException("Charset " + charset + " is not ASCII-compatible");
+    }
+
+    private static OutputStream openOutput(File file, Charset charset) throws IOException {
+        Objects.requireNonNull(file);
+        checkCharset(charset);
+        return CompressionCodecs.openOutput(file);
+    }
+}
@@ -1,10 +1,11 @@
 package io.github.defective4.dsp.vcd4j.file;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -12,23 +13,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
-import io.github.defective4.dsp.vcd4j.data.BinaryChangeEntry;
 import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
-import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
-import io.github.defective4.dsp.vcd4j.data.Scope;
-import io.github.defective4.dsp.vcd4j.data.TimeScale;
 import io.github.defective4.dsp.vcd4j.data.VCD;
+import io.github.defective4.dsp.vcd4j.data.ValueChangeColumns;
 import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
 
 /**
  * Provides methods to write {@link VCD} objects to VCD files.
  *
- * This class supports writing VCD data to output files and writers.
+ * This class supports writing VCD data to output files and writers. To write
+ * value changes as they arrive, without building a {@link VCD} first, use
+ * {@link VCDStreamWriter}.
  */
 public class VCDWriter {
 
-    private static final String INDENT = "  ";
-
     private VCDWriter() {}
 
     public static void write(VCD vcd, File file) throws IOException {
@@ -40,7 +38,22 @@ public class VCDWriter {
         Objects.requireNonNull(vcd);
         Objects.requireNonNull(charset);
         validate(vcd);
-        try (Writer writer = new FileWriter(file)) {
+        try (VCDStreamWriter writer = new VCDStreamWriter(file, charset)) {
+            write(vcd, writer);
+        }
+    }
+
+    /**
+     * Writes the VCD as UTF-8 data and closes the stream
+     *
+     * @param  vcd         VCD to write
+     * @param  stream      destination of VCD data
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(VCD vcd, OutputStream stream) throws IOException {
+        Objects.requireNonNull(stream);
+        validate(vcd);
+        try (VCDStreamWriter writer = new VCDStreamWriter(stream)) {
             write(vcd, writer);
         }
     }
@@ -53,72 +66,75 @@ public class VCDWriter {
         write(vcd, new File(file), charset);
     }
 
+    /**
+     * Writes the VCD as UTF-8 data and closes the channel
+     *
+     * @param  vcd         VCD to write
+     * @param  channel     destination of VCD data
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(VCD vcd, WritableByteChannel channel) throws IOException {
+        Objects.requireNonNull(channel);
+        validate(vcd);
+        try (VCDStreamWriter writer = new VCDStreamWriter(channel)) {
+            write(vcd, writer);
+        }
+    }
+
+    /**
+     * Writes the VCD and closes the writer
+     *
+     * @param  vcd                  VCD to write
+     * @param  vcdWriter            destination of VCD data
+     * @throws UncheckedIOException if an I/O error occurs
+     */
     public static void write(VCD vcd, Writer vcdWriter) {
         Objects.requireNonNull(vcdWriter);
         validate(vcd);
-        try (PrintWriter writer = new PrintWriter(vcdWriter)) {
-            if (vcd.getDate() != null) writeSection(writer, "date", vcd.getDate(), true);
-            if (vcd.getVersion() != null) writeSection(writer, "version", vcd.getVersion(), true);
-            if (vcd.getComment() != null) writeSection(writer, "comment", vcd.getComment(), true);
-            TimeScale timeScale = vcd.getTimeScale();
-            writeSection(writer, "timescale", timeScale.getResolution() + timeScale.getUnit().getName());
-            Scope scope = vcd.getScope();
-            writeSection(writer, "scope", scope.getType().name().toLowerCase() + " " + scope.getName());
-            for (Map.Entry<String, VariableDefinition> entry : vcd.getVariableDefinitions().entrySet()) {
-                VariableDefinition value = entry.getValue();
-                writeSection(writer, "var", value.getType().name().toLowerCase() + " " + value.getBitCount() + " "
-                        + value.getIdentifier() + " " + value.getName());
-            }
-            writer.println("$upscope $end");
-            writer.println("$enddefinitions $end");
-            writer.println("$dumpvars");
-            Map<Long, List<ChangeEntry<?>>> valueChanges = vcd.getValueChanges();
-            List<Map.Entry<Long, List<ChangeEntry<?>>>> sorted = new ArrayList<>(valueChanges.entrySet());
-            sorted.sort((e1, e2) -> (int) (e1.getKey() - e2.getKey()));
-            for (Map.Entry<Long, List<ChangeEntry<?>>> entry : sorted) {
-                for (ChangeEntry<?> val : entry.getValue()) {
-                    VariableDefinition def = val.getVariable();
-                    if (val instanceof MultibitChangeEntry mb) {
-                        writer.print("b");
-                        if (mb.isUndefined()) writer.println("x".repeat(def.getBitCount()) + " " + def.getIdentifier());
-                        else {
-                            String bitsString = Integer.toBinaryString(mb.getValue());
-                            if (bitsString.length() < def.getBitCount()) {
-                                int len = bitsString.length();
-                                for (int i = len; i < def.getBitCount(); i++) {
-                                    writer.print("0");
-                                }
-                            }
-                            writer.println(bitsString + " " + def.getIdentifier());
-                        }
-                    } else if (val instanceof BinaryChangeEntry bb) {
-                        writer.println(bb.getValue().getChar() + def.getIdentifier());
-                    } else throw new IllegalStateException("Unrecognized change entry class: " + val.getClass());
-                }
-                writer.println("#" + entry.getKey());
-            }
+        try (VCDStreamWriter writer = new VCDStreamWriter(vcdWriter)) {
+            write(vcd, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     private static void validate(VCD vcd) {
         Map<String, VariableDefinition> def = vcd.getVariableDefinitions();
+        if (vcd.isColumnar()) {
+            for (VariableDefinition variable : vcd.getColumns().getVariables())
+                if (!def.containsKey(variable.getIdentifier())) throw new IllegalArgumentException(
+                        String.format("Variable \"%s\" is undefined", variable.getIdentifier()));
+            return;
+        }
         Map<Long, List<ChangeEntry<?>>> changes = vcd.getValueChanges();
         for (List<ChangeEntry<?>> list : changes.values()) for (ChangeEntry<?> entry : list)
             if (!def.containsKey(entry.getVariable().getIdentifier())) throw new IllegalArgumentException(
                     String.format("Variable \"%s\" is undefined", entry.getVariable().getIdentifier()));
     }
 
-    private static void writeSection(PrintWriter writer, String tag, String data) {
-        writeSection(writer, tag, data, false);
-    }
-
-    private static void writeSection(PrintWriter writer, String tag, String data, boolean indent) {
-        if (indent) {
-            writer.println("$" + tag);
-            writer.println(INDENT + data);
-            writer.println("$end");
-        } else {
-            writer.println("$" + tag + " " + data + " $end");
+    private static void write(VCD vcd, VCDStreamWriter writer) throws IOException {
+        writer.writeHeader(vcd);
+        if (vcd.isColumnar()) {
+            ValueChangeColumns columns = vcd.getColumns();
+            ValueChangeColumns.Cursor cursor = columns.cursor();
+            for (int i = 0; i < columns.getTimestampCount(); i++) {
+                long timestamp = columns.getUniqueTimestamp(i);
+                while (cursor.hasNext() && cursor.peekTimestamp() == timestamp) {
+                    cursor.next();
+                    int variable = cursor.getVariableIndex();
+                    int change = cursor.getChangeIndex();
+                    if (columns.isBinary(variable))
+                        writer.writeBinary(columns.getVariable(variable), columns.getState(variable, change));
+                    else if (columns.isWide(variable) || columns.getUnknownBits(variable, change) != 0)
+                        writer.writeVector(columns.getVariable(variable), columns.getVector(variable, change));
+                    else writer.writeMultibit(columns.getVariable(variable), columns.getValue(variable, change));
+                }
+                writer.writeTimestamp(timestamp);
+            }
+            return;
         }
+        List<Map.Entry<Long, List<ChangeEntry<?>>>> sorted = new ArrayList<>(vcd.getValueChanges().entrySet());
+        sorted.sort((e1, e2) -> Long.compare(e1.getKey(), e2.getKey()));
+        for (Map.Entry<Long, List<ChangeEntry<?>>> entry : sorted) writer.append(entry.getKey(), entry.getValue());
     }
 }
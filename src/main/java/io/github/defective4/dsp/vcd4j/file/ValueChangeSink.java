@@ -0,0 +1,26 @@
+package io.github.defective4.dsp.vcd4j.file;
+
+import java.io.IOException;
+
+import io.github.defective4.dsp.vcd4j.data.BitVector;
+import io.github.defective4.dsp.vcd4j.data.State;
+import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+
+/**
+ * Receives value changes decoded by {@link MappedVCDScanner}.<br>
+ * Changes are reported in file order. Every call to
+ * {@link #timestamp(long)} closes the block of changes reported since the
+ * previous timestamp.
+ */
+interface ValueChangeSink {
+    void binaryChange(VariableDefinition variable, State state) throws IOException;
+
+    void multibitChange(VariableDefinition variable, int value) throws IOException;
+
+    void timestamp(long timestamp) throws IOException;
+
+    /**
+     * Receives a change of a {@link VariableDefinition#isWide() wide} variable
+     */
+    void vectorChange(VariableDefinition variable, BitVector value) throws IOException;
+}
@@ -0,0 +1,171 @@
+package io.github.defective4.dsp.vcd4j.player;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Options controlling how {@link VCDPlayer} delivers events to a listener.
+ * <p>
+ * By default ({@link #INLINE}) listeners are called synchronously on the player
+ * thread, so a slow listener delays the playback. Listeners added with
+ * asynchronous options get their own bounded event queue, drained in order on
+ * an executor, and the player only waits for them when the queue is full and
+ * the overflow policy is {@link OverflowPolicy#BLOCK}.
+ * </p>
+ * Instances are immutable and constructed with {@link Builder}.
+ */
+public class DispatchOptions {
+    /**
+     * The builder class.<br>
+     * Options built with it are asynchronous.
+     */
+    public static class Builder {
+        private Executor executor;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private int queueCapacity = 1024;
+
+        public DispatchOptions build() {
+            return new DispatchOptions(this);
+        }
+
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        /**
+         * Set the executor used to deliver events to the listener.<br>
+         * Events of a listener are never delivered concurrently, even if the
+         * executor has multiple threads. On Java 21 and newer, a virtual thread
+         * executor can be used.<br>
+         * If <code>null</code>, the listener gets a dedicated thread, which is
+         * started on demand and terminates after a second of inactivity.<br>
+         * <b>Default value:</b> <code>null</code>
+         *
+         * @param  executor
+         * @return
+         */
+        public Builder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set what happens to events that don't fit in a full queue.<br>
+         * {@link PlayerListener#playerStopped(long, long)} events are always
+         * queued, regardless of this policy.<br>
+         * <b>Default value:</b> {@link OverflowPolicy#BLOCK}
+         *
+         * @param  overflowPolicy
+         * @return
+         */
+        public Builder setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of events waiting to be delivered.<br>
+         * <b>Default value:</b> 1024
+         *
+         * @param  queueCapacity
+         * @return
+         * @throws IllegalArgumentException if queueCapacity is less than 1
+         */
+        public Builder setQueueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity < 1");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+    }
+
+    /**
+     * Determines what happens when a listener's queue is full
+     */
+    public static enum OverflowPolicy {
+        /**
+         * The player waits until there is space in the queue
+         */
+        BLOCK,
+        /**
+         * Value changes are merged into the newest queued event if it's a value
+         * change event, and ticks replace the newest queued event if it's a tick,
+         * so events are still delivered in order. A tick queued after value
+         * changes is skipped when newer value changes arrive, as they are followed
+         * by a newer tick. Merged changes are delivered
+         * through {@link PlayerListener#valuesChangedBatch(java.util.List, long)}.
+         * Events that can't be merged are dropped.
+         */
+        COALESCE,
+        /**
+         * The new event is dropped
+         */
+        DROP
+    }
+
+    /**
+     * Events are delivered synchronously, on the player thread
+     */
+    public static final DispatchOptions INLINE = new DispatchOptions();
+
+    private final Executor executor;
+    private final boolean inline;
+    private final OverflowPolicy overflowPolicy;
+    private final int queueCapacity;
+
+    private DispatchOptions() {
+        executor = null;
+        inline = true;
+        overflowPolicy = OverflowPolicy.BLOCK;
+        queueCapacity = 0;
+    }
+
+    private DispatchOptions(Builder builder) {
+        if (builder.overflowPolicy == null) throw new IllegalArgumentException("overflowPolicy can't be null");
+        executor = builder.executor;
+        inline = false;
+        overflowPolicy = builder.overflowPolicy;
+        queueCapacity = builder.queueCapacity;
+    }
+
+    /**
+     * @return executor delivering events, or <code>null</code> if the listener
+     *         uses a dedicated thread or is called inline
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return capacity of the listener's queue, or 0 if the listener is called
+     *         inline
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return <code>true</code> if events are delivered synchronously, on the
+     *         player thread
+     */
+    public boolean isInline() {
+        return inline;
+    }
+
+    @Override
+    public String toString() {
+        return inline ? "DispatchOptions [inline]"
+                : "DispatchOptions [executor=" + executor + ", overflowPolicy=" + overflowPolicy + ", queueCapacity="
+                        + queueCapacity + "]";
+    }
+}
@@ -0,0 +1,256 @@
+package io.github.defective4.dsp.vcd4j.player;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
+
+/**
+ * Delivers player events to a single listener, according to its
+ * {@link DispatchOptions}, and counts events that couldn't be delivered in
+ * time.<br>
+ * Instances are created by {@link VCDPlayer} and can be obtained with
+ * {@link VCDPlayer#getDispatcher(PlayerListener)}.
+ */
+public final class ListenerDispatcher {
+    private static final class Event {
+        private static final int BATCH = 1, STOPPED = 2, TICKED = 3, VALUES = 0;
+
+        private List<Map.Entry<Long, List<ChangeEntry<?>>>> changes;
+        private List<ChangeEntry<?>> entries;
+        private int kind;
+        private boolean owned;
+        private long playerTime, realTimeNanos;
+
+        private Event(int kind, long playerTime, long realTimeNanos) {
+            this.kind = kind;
+            this.playerTime = playerTime;
+            this.realTimeNanos = realTimeNanos;
+        }
+
+        private boolean isValues() {
+            return kind == VALUES || kind == BATCH;
+        }
+    }
+
+    private long coalescedEvents;
+    private long delayedEvents;
+    private long droppedEvents;
+    private final Executor executor;
+    private final PlayerListener listener;
+    private final DispatchOptions options;
+    private final Deque<Event> queue = new ArrayDeque<>();
+    private boolean scheduled;
+
+    ListenerDispatcher(PlayerListener listener, DispatchOptions options) {
+        this.listener = listener;
+        this.options = options;
+        if (options.isInline()) executor = null;
+        else if (options.getExecutor() != null) executor = options.getExecutor();
+        else {
+            ThreadPoolExecutor dedicated = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), task -> new Thread(task, "VCDPlayer listener"));
+            dedicated.allowCoreThreadTimeOut(true);
+            executor = dedicated;
+        }
+    }
+
+    /**
+     * @return number of events merged into other queued events
+     */
+    public synchronized long getCoalescedEvents() {
+        return coalescedEvents;
+    }
+
+    /**
+     * @return number of events the player had to wait for before queuing them
+     */
+    public synchronized long getDelayedEvents() {
+        return delayedEvents;
+    }
+
+    /**
+     * @return number of events that were not delivered due to a full queue, or
+     *         because the executor rejected them
+     */
+    public synchronized long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    public PlayerListener getListener() {
+        return listener;
+    }
+
+    public DispatchOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return number of events waiting to be delivered
+     */
+    public synchronized int getQueuedEvents() {
+        return queue.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ListenerDispatcher [listener=" + listener + ", options=" + options + "]";
+    }
+
+    void playerStopped(long playerTime, long realTimeNanos) {
+        if (executor == null) listener.playerStopped(playerTime, realTimeNanos);
+        else enqueue(new Event(Event.STOPPED, playerTime, realTimeNanos));
+    }
+
+    void playerTicked(long playerTime, long realTimeNanos) {
+        if (executor == null) listener.playerTicked(playerTime, realTimeNanos);
+        else enqueue(new Event(Event.TICKED, playerTime, realTimeNanos));
+    }
+
+    /**
+     * Stops the dedicated thread of the listener, if there is one, once all queued
+     * events are delivered
+     */
+    void shutdown() {
+        if (options.isInline() || options.getExecutor() != null) return;
+        ((ExecutorService) executor).shutdown();
+    }
+
+    void valuesChanged(List<ChangeEntry<?>> entries, long playerTime, long realTimeNanos) {
+        if (executor == null) listener.valuesChanged(entries, playerTime, realTimeNanos);
+        else {
+            Event event = new Event(Event.VALUES, playerTime, realTimeNanos);
+            event.entries = entries;
+            enqueue(event);
+        }
+    }
+
+    void valuesChangedBatch(List<Map.Entry<Long, List<ChangeEntry<?>>>> changes, long realTimeNanos) {
+        if (executor == null) listener.valuesChangedBatch(changes, realTimeNanos);
+        else {
+            Event event = new Event(Event.BATCH, 0, realTimeNanos);
+            event.changes = changes;
+            enqueue(event);
+        }
+    }
+
+    /**
+     * Merges an event into the newest queued event. Older events are never
+     * merged into, as that would reorder the event with the ones queued after
+     * them
+     */
+    private boolean coalesce(Event event) {
+        Event queued = queue.peekLast();
+        if (queued == null) return false;
+        if (event.kind == Event.TICKED) {
+            if (queued.kind != Event.TICKED) return false;
+            queued.playerTime = event.playerTime;
+            queued.realTimeNanos = event.realTimeNanos;
+            return true;
+        }
+        if (!event.isValues()) return false;
+        if (queued.kind == Event.TICKED) {
+            // Value changes are followed by a newer tick, so the queued tick can be skipped without reordering
+            queue.pollLast();
+            queued = queue.peekLast();
+            if (queued == null || !queued.isValues()) {
+                queue.add(event);
+                return true;
+            }
+        }
+        if (!queued.isValues()) return false;
+        if (!queued.owned) {
+            // The player's lists are copied once, then merged events are appended in place
+            List<Map.Entry<Long, List<ChangeEntry<?>>>> changes = new ArrayList<>();
+            if (queued.kind == Event.VALUES) changes.add(Map.entry(queued.playerTime, queued.entries));
+            else changes.addAll(queued.changes);
+            queued.kind = Event.BATCH;
+            queued.changes = changes;
+            queued.entries = null;
+            queued.owned = true;
+        }
+        if (event.kind == Event.VALUES) queued.changes.add(Map.entry(event.playerTime, event.entries));
+        else queued.changes.addAll(event.changes);
+        queued.realTimeNanos = event.realTimeNanos;
+        return true;
+    }
+
+    private void deliver(Event event) {
+        switch (event.kind) {
+            case Event.VALUES -> listener.valuesChanged(event.entries, event.playerTime, event.realTimeNanos);
+            case Event.BATCH -> listener.valuesChangedBatch(event.changes, event.realTimeNanos);
+            case Event.TICKED -> listener.playerTicked(event.playerTime, event.realTimeNanos);
+            case Event.STOPPED -> listener.playerStopped(event.playerTime, event.realTimeNanos);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Event event;
+            synchronized (this) {
+                event = queue.poll();
+                if (event == null) {
+                    scheduled = false;
+                    return;
+                }
+                notifyAll();
+            }
+            try {
+                deliver(event);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void enqueue(Event event) {
+        synchronized (this) {
+            if (queue.size() >= options.getQueueCapacity() && event.kind != Event.STOPPED) {
+                switch (options.getOverflowPolicy()) {
+                    case BLOCK -> {
+                        delayedEvents++;
+                        boolean interrupted = false;
+                        while (queue.size() >= options.getQueueCapacity()) try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                        if (interrupted) Thread.currentThread().interrupt();
+                    }
+                    case COALESCE -> {
+                        if (!coalesce(event)) droppedEvents++;
+                        else coalescedEvents++;
+                        return;
+                    }
+                    case DROP -> {
+                        droppedEvents++;
+                        return;
+                    }
+                }
+            }
+            queue.add(event);
+            if (scheduled) return;
+            scheduled = true;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // The executor was shut down or is saturated, so nothing will drain the queue
+            synchronized (this) {
+                droppedEvents += queue.size();
+                queue.clear();
+                scheduled = false;
+                notifyAll();
+            }
+        }
+    }
+}
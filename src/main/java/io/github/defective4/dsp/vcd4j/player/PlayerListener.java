@@ -1,6 +1,7 @@
 package io.github.defective4.dsp.vcd4j.player;
 
 import java.util.List;
+import java.util.Map;
 
 import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
 
@@ -19,7 +20,8 @@ public interface PlayerListener {
     void playerStopped(long playerTime, long realTimeNanos);
 
     /**
-     * Called every player tick
+     * Called every time the player wakes up to dispatch changes, after
+     * {@link #valuesChanged(List, long, long)}
      *
      * @param playerTime    number of ticks since the player was started
      * @param realTimeNanos real nanosecond time passed since the player was started
@@ -34,4 +36,20 @@ public interface PlayerListener {
      * @param realTimeNanos real nanosecond time passed since the player was started
      */
     void valuesChanged(List<ChangeEntry<?>> entries, long playerTime, long realTimeNanos);
+
+    /**
+     * Called instead of {@link #valuesChanged(List, long, long)} when the player
+     * dispatches multiple timestamps at once.<br>
+     * By default calls {@link #valuesChanged(List, long, long)} for each
+     * timestamp.
+     *
+     * @param changes       player times mapped to changes that happened at them, in
+     *                      time order
+     * @param realTimeNanos real nanosecond time passed since the player was started
+     * @see                 VCDPlayer#setBatchSize(int)
+     */
+    default void valuesChangedBatch(List<Map.Entry<Long, List<ChangeEntry<?>>>> changes, long realTimeNanos) {
+        for (Map.Entry<Long, List<ChangeEntry<?>>> entry : changes)
+            valuesChanged(entry.getValue(), entry.getKey(), realTimeNanos);
+    }
 }
@@ -2,16 +2,18 @@ package io.github.defective4.dsp.vcd4j.player;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.LockSupport;
 
 import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.SignalIndex;
 import io.github.defective4.dsp.vcd4j.data.TimeScale;
 import io.github.defective4.dsp.vcd4j.data.TimeScale.TimeScaleUnit;
+import io.github.defective4.dsp.vcd4j.data.ValueChangeColumns;
 import io.github.defective4.dsp.vcd4j.data.VCD;
 import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
 
@@ -20,19 +22,82 @@ import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
  *
  * This class simulates the timing and state changes of signals as described in
  * a VCD file, and allows the addition of listeners to observe playback events.
+ * <p>
+ * Playback is event-driven. A single player thread computes the deadline of the
+ * next transition and sleeps until it, parking for most of the wait and
+ * spinning for the last {@link #getSpinThreshold()} nanoseconds. Deadlines are
+ * derived from the start time of the playback rather than from the previous
+ * event, so timing errors don't accumulate. How late each dispatch was is
+ * reported by {@link #getMaxLatenessNanos()} and related methods.
+ * </p>
+ * <p>
+ * With {@link PlaybackMode#AS_FAST_AS_POSSIBLE}, pacing is disabled and changes
+ * are dispatched in timestamp order as fast as listeners consume them. Multiple
+ * timestamps can be delivered in a single
+ * {@link PlayerListener#valuesChangedBatch(List, long)} callback by setting
+ * {@link #setBatchSize(int)}.
+ * </p>
+ * <p>
+ * Playback can be paused, resumed and moved to any time with
+ * {@link #seek(long)}. Seeking uses a binary search over the value change
+ * blocks and a {@link SignalIndex} to reconstruct the state of all signals at
+ * the target time, so it takes <i>O(log n)</i> time after the index is built on
+ * first use.
+ * </p>
+ * <p>
+ * Listeners are called on the player thread by default. Listeners added with
+ * asynchronous {@link DispatchOptions} are decoupled from it by a bounded
+ * queue, drained on a dedicated thread or a user-supplied executor.
+ * </p>
  */
 public class VCDPlayer {
+    /**
+     * Determines how the player paces dispatched changes
+     */
+    public static enum PlaybackMode {
+        /**
+         * Changes are dispatched as fast as listeners consume them, ignoring their
+         * timestamps
+         */
+        AS_FAST_AS_POSSIBLE,
+        /**
+         * Changes are dispatched at their timestamps, scaled by the speed
+         * multiplier
+         */
+        REAL_TIME
+    }
+
+    private static final long DEFAULT_SPIN_THRESHOLD = 100_000;
+
+    private long anchorNanos;
+    private long anchorPlayerTime;
+    private volatile int batchSize = 1;
+    private final List<List<ChangeEntry<?>>> blocks;
+    private final ValueChangeColumns columns;
+    private ValueChangeColumns.Cursor cursor;
+    private int cursorBlock = -1;
+    private volatile long dispatchedEvents;
+    private final List<ListenerDispatcher> dispatchers = new CopyOnWriteArrayList<>();
     private int index = 0;
-    private final List<PlayerListener> listeners = new CopyOnWriteArrayList<>();
-    private ScheduledExecutorService playerService;
+    private final Object indexLock = new Object();
+    private final Object lock = new Object();
+    private volatile long maxLatenessNanos;
+    private final double nanosPerUnit;
+    private volatile boolean paused;
+    private volatile PlaybackMode playbackMode = PlaybackMode.REAL_TIME;
+    private volatile Thread playerThread;
     private long playerTime = 0;
-    private int speedMultiplier = 1;
-    private boolean started;
+    private volatile int schedule;
+    private SignalIndex signalIndex;
+    private volatile double speedMultiplier = 1;
+    private volatile long spinThreshold = DEFAULT_SPIN_THRESHOLD;
+    private volatile boolean started;
+    private long startNanos;
+    private final long[] times;
+    private volatile long totalLatenessNanos;
 
     private final TimeScale timeScale;
 
-    private final List<Map.Entry<Long, List<ChangeEntry<?>>>> valueChanges = new ArrayList<>();
-
     private final Map<String, VariableDefinition> variableDefinitions;
 
     /**
@@ -48,25 +113,15 @@ public class VCDPlayer {
      */
     public VCDPlayer(TimeScale timeScale, Map<Long, List<ChangeEntry<?>>> valueChanges,
             Map<String, VariableDefinition> variableDefinitions) {
-        Objects.requireNonNull(timeScale);
-        Objects.requireNonNull(valueChanges);
-        Objects.requireNonNull(variableDefinitions);
-        if (valueChanges.isEmpty()) throw new IllegalArgumentException("Value changes can't be empty");
-        if (variableDefinitions.isEmpty()) throw new IllegalArgumentException("Variable definitions can't be empty");
-        if (timeScale.getUnit().getTimeUnit() == null) {
-            throw new IllegalArgumentException(timeScale.getUnit().name() + " time scale is not supported.");
-        }
-        this.timeScale = timeScale;
-        this.variableDefinitions = variableDefinitions;
-        for (Map.Entry<Long, List<ChangeEntry<?>>> entry : valueChanges.entrySet())
-            this.valueChanges.add(Map.entry(entry.getKey() * timeScale.getResolution(), entry.getValue()));
-
-        this.valueChanges.sort((e1, e2) -> (int) (e1.getKey() - e2.getKey()));
+        this(timeScale, Objects.requireNonNull(valueChanges), null, variableDefinitions);
     }
 
     /**
      * Constructs a new VCD player.<br>
-     * This is a convenience constructor accepting a single VCD object.
+     * This is a convenience constructor accepting a single VCD object.<br>
+     * Columnar VCDs are read directly from their columns, without converting
+     * the VCD's own storage. Change entries of a block are only created when
+     * the block is dispatched.
      *
      * @param  vcd                      the VCD to play
      * @throws IllegalArgumentException if the time scale unit is
@@ -74,96 +129,527 @@ public class VCDPlayer {
      */
     public VCDPlayer(VCD vcd) {
         this(vcd.getTimeScale().getUnit().getTimeUnit() == null ? new TimeScale(TimeScaleUnit.SECOND, 1)
-                : vcd.getTimeScale(), vcd.getValueChanges(), vcd.getVariableDefinitions());
+                : vcd.getTimeScale(), vcd.isColumnar() ? null : vcd.getValueChanges(),
+                vcd.isColumnar() ? vcd.getColumns() : null, vcd.getVariableDefinitions());
         if (vcd.getTimeScale().getUnit().getTimeUnit() == null) {
             throw new IllegalArgumentException(vcd.getTimeScale().getUnit().name()
                     + " time scale is not supported. Try using VCD#setTimeScaleUnit before passing it as an argument.");
         }
     }
 
+    private VCDPlayer(TimeScale timeScale, Map<Long, List<ChangeEntry<?>>> valueChanges, ValueChangeColumns columns,
+            Map<String, VariableDefinition> variableDefinitions) {
+        Objects.requireNonNull(timeScale);
+        Objects.requireNonNull(variableDefinitions);
+        if (columns == null ? valueChanges.isEmpty() : columns.getTimestampCount() == 0)
+            throw new IllegalArgumentException("Value changes can't be empty");
+        if (variableDefinitions.isEmpty()) throw new IllegalArgumentException("Variable definitions can't be empty");
+        if (timeScale.getUnit().getTimeUnit() == null) {
+            throw new IllegalArgumentException(timeScale.getUnit().name() + " time scale is not supported.");
+        }
+        this.timeScale = timeScale;
+        this.variableDefinitions = variableDefinitions;
+        this.columns = columns;
+        nanosPerUnit = timeScale.getUnit().getTimeUnit().toNanos(1);
+        if (columns != null) {
+            blocks = null;
+            times = new long[columns.getTimestampCount()];
+            for (int i = 0; i < times.length; i++) times[i] = columns.getUniqueTimestamp(i) * timeScale.getResolution();
+        } else {
+            List<Map.Entry<Long, List<ChangeEntry<?>>>> entries = new ArrayList<>(valueChanges.entrySet());
+            entries.sort(Map.Entry.comparingByKey());
+            blocks = new ArrayList<>(entries.size());
+            times = new long[entries.size()];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = entries.get(i).getKey() * timeScale.getResolution();
+                blocks.add(entries.get(i).getValue());
+            }
+        }
+    }
+
+    /**
+     * Adds a listener called synchronously on the player thread
+     *
+     * @param  listener the listener
+     * @return          <code>true</code> if the listener was added,
+     *                  <code>false</code> if it was already present
+     * @see             #addListener(PlayerListener, DispatchOptions)
+     */
     public boolean addListener(PlayerListener listener) {
+        return addListener(listener, DispatchOptions.INLINE);
+    }
+
+    /**
+     * Adds a listener with the given dispatch options.<br>
+     * Asynchronous listeners receive events through their own bounded queue, so
+     * a slow listener doesn't delay the playback or other listeners, unless its
+     * overflow policy is {@link DispatchOptions.OverflowPolicy#BLOCK}.<br>
+     * Listeners are called without holding the player's internal lock, so
+     * listeners, even slow ones, don't block other threads controlling the
+     * player. As a consequence, an event taken from the dump right before
+     * {@link #pause()} or {@link #seek(long)} may still be delivered after that
+     * method returns.
+     *
+     * @param  listener the listener
+     * @param  options  dispatch options of the listener
+     * @return          <code>true</code> if the listener was added,
+     *                  <code>false</code> if it was already present
+     */
+    public boolean addListener(PlayerListener listener, DispatchOptions options) {
         Objects.requireNonNull(listener);
-        if (!listeners.contains(listener)) return listeners.add(listener);
-        return false;
+        Objects.requireNonNull(options);
+        synchronized (dispatchers) {
+            if (getDispatcher(listener) != null) return false;
+            return dispatchers.add(new ListenerDispatcher(listener, options));
+        }
+    }
+
+    /**
+     * @param  listener a listener added to this player
+     * @return          the dispatcher delivering events to the listener, or
+     *                  <code>null</code> if the listener was not added
+     */
+    public ListenerDispatcher getDispatcher(PlayerListener listener) {
+        for (ListenerDispatcher dispatcher : dispatchers) if (dispatcher.getListener() == listener) return dispatcher;
+        return null;
     }
 
     public List<PlayerListener> getListeners() {
+        List<PlayerListener> listeners = new ArrayList<>(dispatchers.size());
+        for (ListenerDispatcher dispatcher : dispatchers) listeners.add(dispatcher.getListener());
         return Collections.unmodifiableList(listeners);
     }
 
-    public int getSpeedMultiplier() {
+    /**
+     * @return average number of nanoseconds by which dispatches of the current or
+     *         last playback were late, or 0 if nothing was dispatched yet
+     */
+    public double getAverageLatenessNanos() {
+        long events = dispatchedEvents;
+        return events == 0 ? 0 : totalLatenessNanos / (double) events;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return number of times the current or last playback woke up to dispatch
+     *         changes
+     */
+    public long getDispatchedEvents() {
+        return dispatchedEvents;
+    }
+
+    /**
+     * @return the largest number of nanoseconds by which a dispatch of the current
+     *         or last playback was late
+     */
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos;
+    }
+
+    public PlaybackMode getPlaybackMode() {
+        return playbackMode;
+    }
+
+    /**
+     * Returns the current position of the player.<br>
+     * While the player is playing in real time, the position is computed from the
+     * time elapsed since the last dispatch, and never exceeds the time of the next
+     * transition.
+     *
+     * @return current player time
+     */
+    public long getPlayerTime() {
+        synchronized (lock) {
+            return currentPlayerTime();
+        }
+    }
+
+    public double getSpeedMultiplier() {
         return speedMultiplier;
     }
 
+    public long getSpinThreshold() {
+        return spinThreshold;
+    }
+
+    /**
+     * @return <code>true</code> if the player was paused with {@link #pause()} and
+     *         not resumed yet
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
     public boolean isStarted() {
         return started;
     }
 
+    /**
+     * Pauses the player, keeping its current position.<br>
+     * If the player is not started, this method does nothing.
+     */
+    public void pause() {
+        synchronized (lock) {
+            if (!started) return;
+            playerTime = currentPlayerTime();
+            halt();
+            paused = true;
+        }
+    }
+
+    /**
+     * Removes a listener.<br>
+     * Events already queued for an asynchronous listener are still delivered.
+     *
+     * @param  listener the listener
+     * @return          <code>true</code> if the listener was removed
+     */
     public boolean removeListener(PlayerListener listener) {
         Objects.requireNonNull(listener);
-        return listeners.remove(listener);
+        synchronized (dispatchers) {
+            ListenerDispatcher dispatcher = getDispatcher(listener);
+            if (dispatcher == null) return false;
+            dispatchers.remove(dispatcher);
+            dispatcher.shutdown();
+            return true;
+        }
+    }
+
+    /**
+     * Resumes a paused player from the position it was paused at.<br>
+     * Unlike {@link #start()}, lateness statistics are not reset.
+     *
+     * @throws IllegalStateException if the player is not paused
+     */
+    public void resume() {
+        synchronized (lock) {
+            if (!paused) throw new IllegalStateException("Player is not paused");
+            launch();
+        }
+    }
+
+    /**
+     * Moves the player to the given time.<br>
+     * All blocks of changes that take effect at or before the given time are
+     * considered played, and playback continues with the first block after it.
+     * This method can be called whether the player is started, paused or
+     * stopped.<br>
+     * The first call builds a {@link SignalIndex} of the played VCD. It's built
+     * before the player is moved, so a running playback continues meanwhile.
+     *
+     * @param  time                     target player time
+     * @return                          the last change of every variable that took
+     *                                  effect at or before the given time
+     * @throws IllegalArgumentException if time is negative
+     */
+    public List<ChangeEntry<?>> seek(long time) {
+        if (time < 0) throw new IllegalArgumentException("time < 0");
+        SignalIndex signalIndex = getSignalIndex();
+        synchronized (lock) {
+            boolean running = started;
+            if (running) halt();
+            int low = 0, high = times.length;
+            while (low < high) {
+                int mid = low + high >>> 1;
+                if (times[mid] <= time) low = mid + 1;
+                else high = mid;
+            }
+            index = Math.min(low + 1, times.length);
+            playerTime = time;
+            if (running) launch();
+        }
+        List<ChangeEntry<?>> states = new ArrayList<>();
+        ValueChangeColumns columns = signalIndex.getColumns();
+        for (int i = 0; i < columns.getVariableCount(); i++) {
+            ChangeEntry<?> entry = signalIndex.getValueAt(columns.getVariable(i), time / timeScale.getResolution());
+            if (entry != null) states.add(entry);
+        }
+        return states;
+    }
+
+    /**
+     * Sets the maximum number of timestamps dispatched in a single callback.<br>
+     * If set to more than 1, changes are delivered through
+     * {@link PlayerListener#valuesChangedBatch(List, long)}. In
+     * {@link PlaybackMode#AS_FAST_AS_POSSIBLE} mode every batch is filled up to
+     * this size, while in {@link PlaybackMode#REAL_TIME} mode a batch only
+     * includes timestamps that are already due, so a late player can catch
+     * up.<br>
+     * It can be changed while the player is started.<br>
+     * <b>Default value:</b> 1
+     *
+     * @param  batchSize                maximum number of timestamps per callback
+     * @throws IllegalArgumentException if batchSize is less than 1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize < 1");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the pacing of this player.<br>
+     * It can be changed while the player is started. Switching back to
+     * {@link PlaybackMode#REAL_TIME} continues real-time playback from the current
+     * player time.<br>
+     * <b>Default value:</b> {@link PlaybackMode#REAL_TIME}
+     *
+     * @param playbackMode a non-null playback mode
+     */
+    public void setPlaybackMode(PlaybackMode playbackMode) {
+        Objects.requireNonNull(playbackMode);
+        synchronized (lock) {
+            this.playbackMode = playbackMode;
+            reschedule();
+        }
     }
 
     /**
      * Sets playback speed of this player.<br>
-     * For example a value of <code>2</code> will result in a 2x faster playback
+     * For example a value of <code>2</code> will result in a 2x faster playback,
+     * and a value of <code>0.01</code> in a 100x slower one.<br>
+     * The speed can be changed while the player is started. The playback then
+     * continues from its current position at the new speed, and the deadline of
+     * the next transition is recomputed immediately.
+     *
+     * @param  speedMultiplier          new playback speed
+     * @throws IllegalArgumentException if speedMultiplier is not a positive,
+     *                                  finite number
+     */
+    public void setSpeedMultiplier(double speedMultiplier) {
+        if (!(speedMultiplier > 0) || Double.isInfinite(speedMultiplier))
+            throw new IllegalArgumentException("speedMultiplier must be a positive, finite number");
+        synchronized (lock) {
+            if (started) {
+                playerTime = currentPlayerTime();
+                anchorNanos = System.nanoTime();
+                anchorPlayerTime = playerTime;
+            }
+            this.speedMultiplier = speedMultiplier;
+            reschedule();
+        }
+    }
+
+    /**
+     * Sets how long before a deadline the player thread stops parking and starts
+     * busy-waiting.<br>
+     * Higher values improve timing accuracy at the cost of CPU time, since
+     * {@link LockSupport#parkNanos(long)} usually oversleeps by tens of
+     * microseconds. A value of 0 disables spinning.<br>
+     * <b>Default value:</b> {@value #DEFAULT_SPIN_THRESHOLD}
      *
-     * @param speedMultiplier new playback speed
+     * @param  spinThreshold            threshold in nanoseconds
+     * @throws IllegalArgumentException if spinThreshold is negative
      */
-    public void setSpeedMultiplier(int speedMultiplier) {
-        if (started) throw new IllegalStateException("Speed multiplier can't be changed when the player is started.");
-        this.speedMultiplier = speedMultiplier;
+    public void setSpinThreshold(long spinThreshold) {
+        if (spinThreshold < 0) throw new IllegalArgumentException("spinThreshold < 0");
+        this.spinThreshold = spinThreshold;
     }
 
     /**
-     * Starts the player
+     * Starts the player.<br>
+     * Playback starts from the beginning, or from the position set with
+     * {@link #seek(long)} or {@link #pause()}. It runs on a new, non-daemon thread,
+     * and lateness statistics are reset.
      *
      * @throws IllegalStateException if the player is already started
      */
     public void start() {
-        if (isStarted()) throw new IllegalStateException("Player already started");
-        started = true;
-        long start = System.nanoTime();
-        playerService = Executors.newScheduledThreadPool(10);
-        playerService.scheduleAtFixedRate(() -> {
-            try {
-                if (index > valueChanges.size()) {
-                    stop();
-                    listeners.forEach(ls -> ls.playerStopped(playerTime, System.nanoTime() - start));
-                    return;
+        synchronized (lock) {
+            if (isStarted()) throw new IllegalStateException("Player already started");
+            maxLatenessNanos = 0;
+            totalLatenessNanos = 0;
+            dispatchedEvents = 0;
+            startNanos = System.nanoTime();
+            launch();
+        }
+    }
+
+    /**
+     * Stops the player and rewinds it to the beginning. <br>
+     * If the player is already stopped, this method does nothing
+     */
+    public void stop() {
+        synchronized (lock) {
+            halt();
+            paused = false;
+            index = 0;
+            playerTime = 0;
+        }
+    }
+
+    /**
+     * @param  index index of a value change block
+     * @return       changes of the block. Blocks of columnar VCDs are decoded
+     *               with a cursor, which is only repositioned when the blocks
+     *               are not read in order
+     */
+    private List<ChangeEntry<?>> block(int index) {
+        if (columns == null) return blocks.get(index);
+        long timestamp = columns.getUniqueTimestamp(index);
+        if (cursorBlock != index) cursor = columns.cursor(timestamp);
+        cursorBlock = index + 1;
+        List<ChangeEntry<?>> entries = new ArrayList<>();
+        while (cursor.hasNext() && cursor.peekTimestamp() == timestamp) {
+            cursor.next();
+            entries.add(columns.toChangeEntry(cursor.getVariableIndex(), cursor.getChangeIndex()));
+        }
+        return entries;
+    }
+
+    private long currentPlayerTime() {
+        if (!started || playbackMode != PlaybackMode.REAL_TIME) return playerTime;
+        long elapsed = (long) ((System.nanoTime() - anchorNanos) * speedMultiplier / nanosPerUnit);
+        return Math.max(playerTime, Math.min(anchorPlayerTime + elapsed, timeOf(index)));
+    }
+
+    private long deadlineOf(long time) {
+        double offset = (time - anchorPlayerTime) * nanosPerUnit / speedMultiplier;
+        return offset >= Long.MAX_VALUE - anchorNanos ? Long.MAX_VALUE : anchorNanos + (long) offset;
+    }
+
+    /**
+     * Advances the playback to the next event
+     *
+     * @return a task calling the listeners, to be run without holding the lock
+     */
+    private Runnable dispatch(long eventTime, boolean realTime, long deadline) {
+        long now = System.nanoTime();
+        if (realTime) {
+            long lateness = now - deadline;
+            if (lateness > maxLatenessNanos) maxLatenessNanos = lateness;
+            totalLatenessNanos += lateness;
+        }
+        dispatchedEvents++;
+        long realTimeNanos = now - startNanos;
+        int size = times.length;
+        if (index >= size) {
+            playerTime = eventTime;
+            stop();
+            return () -> dispatchers.forEach(ls -> ls.playerStopped(eventTime, realTimeNanos));
+        }
+        int batch = batchSize;
+        long tickTime;
+        if (batch == 1) {
+            playerTime = eventTime;
+            tickTime = eventTime;
+            List<ChangeEntry<?>> entries = block(index++);
+            return () -> {
+                dispatchers.forEach(ls -> ls.valuesChanged(entries, eventTime, realTimeNanos));
+                dispatchers.forEach(ls -> ls.playerTicked(tickTime, realTimeNanos));
+            };
+        }
+        List<Map.Entry<Long, List<ChangeEntry<?>>>> changes = new ArrayList<>(Math.min(batch, size - index));
+        do {
+            playerTime = timeOf(index);
+            changes.add(Map.entry(playerTime, block(index++)));
+        } while (changes.size() < batch && index < size && (!realTime || deadlineOf(timeOf(index)) <= now));
+        tickTime = playerTime;
+        return () -> {
+            dispatchers.forEach(ls -> ls.valuesChangedBatch(changes, realTimeNanos));
+            dispatchers.forEach(ls -> ls.playerTicked(tickTime, realTimeNanos));
+        };
+    }
+
+    /**
+     * Builds the signal index on first use. Only immutable state of the player is
+     * read, so the player lock is not needed.
+     */
+    private SignalIndex getSignalIndex() {
+        synchronized (indexLock) {
+            if (signalIndex == null) {
+                if (columns != null) signalIndex = new SignalIndex(columns);
+                else {
+                    Map<Long, List<ChangeEntry<?>>> changes = new LinkedHashMap<>();
+                    for (int i = 0; i < times.length; i++)
+                        changes.put(times[i] / timeScale.getResolution(), blocks.get(i));
+                    signalIndex = new SignalIndex(ValueChangeColumns.of(changes, variableDefinitions));
                 }
-                long prevTime = index > 0 ? valueChanges.get(index - 1).getKey() : 0;
-                playerTime += timeScale.getResolution() * speedMultiplier;
-                if (index == valueChanges.size()) {
-                    if (playerTime >= prevTime) index++;
-                    return;
+            }
+            return signalIndex;
+        }
+    }
+
+    private void halt() {
+        Thread thread = playerThread;
+        playerThread = null;
+        if (thread != null) LockSupport.unpark(thread);
+        started = false;
+    }
+
+    private void launch() {
+        started = true;
+        paused = false;
+        anchorNanos = System.nanoTime();
+        anchorPlayerTime = playerTime;
+        Thread thread = new Thread(this::play, "VCDPlayer");
+        playerThread = thread;
+        thread.start();
+    }
+
+    private void play() {
+        Thread self = Thread.currentThread();
+        boolean paced = true;
+        try {
+            while (true) {
+                long eventTime, deadline = 0;
+                boolean realTime;
+                int version;
+                synchronized (lock) {
+                    if (playerThread != self) return;
+                    version = schedule;
+                    eventTime = timeOf(index);
+                    realTime = playbackMode == PlaybackMode.REAL_TIME;
+                    if (realTime && !paced) {
+                        anchorNanos = System.nanoTime();
+                        anchorPlayerTime = playerTime;
+                    }
+                    paced = realTime;
+                    if (realTime) deadline = deadlineOf(eventTime);
                 }
-                long realTime = System.nanoTime() - start;
-                List<ChangeEntry<?>> entries = valueChanges.get(index).getValue();
-                if (playerTime >= prevTime) {
-                    index++;
-                    listeners.forEach(ls -> ls.valuesChanged(entries, playerTime, realTime));
+                if (realTime && !waitUntil(deadline, self, version)) return;
+                Runnable notification;
+                synchronized (lock) {
+                    if (playerThread != self) return;
+                    if (schedule != version) continue;
+                    notification = dispatch(eventTime, realTime, deadline);
                 }
-                listeners.forEach(ls -> ls.playerTicked(playerTime, realTime));
-            } catch (Exception e) {
-                e.printStackTrace();
-                stop();
-                return;
+                // Listeners are called outside the lock, so they can't block other threads using the player
+                notification.run();
             }
-        }, 0, timeScale.getResolution(), timeScale.getUnit().getTimeUnit());
+        } catch (Exception e) {
+            e.printStackTrace();
+            synchronized (lock) {
+                if (playerThread == self) stop();
+            }
+        }
     }
 
     /**
-     * Stops the player. <br>
-     * If the player is already stopped, this method does nothing
+     * @param  index index of a value change block, or the number of blocks
+     * @return       player time at which the block takes effect, or the end time
+     *               of the playback
      */
-    public void stop() {
-        if (playerService != null) {
-            playerService.shutdown();
-            playerService = null;
+    private long timeOf(int index) {
+        return index > 0 ? times[index - 1] : 0;
+    }
+
+    private void reschedule() {
+        schedule++;
+        Thread thread = playerThread;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    private boolean waitUntil(long deadline, Thread self, int version) {
+        while (playerThread == self && schedule == version) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return true;
+            long spin = spinThreshold;
+            if (remaining > spin) LockSupport.parkNanos(this, remaining - spin);
+            else Thread.onSpinWait();
         }
-        index = 0;
-        playerTime = 0;
-        started = false;
+        return playerThread == self;
     }
 }
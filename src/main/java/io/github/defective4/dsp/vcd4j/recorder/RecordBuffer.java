@@ -0,0 +1,337 @@
+package io.github.defective4.dsp.vcd4j.recorder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.State;
+
+/**
+ * Append-only, chunked buffer of primitive value change records.<br>
+ * Each record consists of a timestamp, a variable index and an
+ * <code>int</code> value. Multi-bit values are stored as is, while binary
+ * states are encoded with {@link #encode(State)}, so they don't collide with
+ * {@link MultibitChangeEntry#UNDEFINED}.
+ * <p>
+ * A buffer has a single writer. The record count is published with release
+ * semantics after every append, so other threads may read all records up to
+ * {@link #size()} without locking. Chunks are held in arrays which are replaced
+ * with larger copies rather than modified when a chunk is added, so readers
+ * never see a partially grown list of chunks.
+ * </p>
+ * <p>
+ * If a spill threshold is set, the buffer writes its records to a temporary
+ * file whenever it holds that many records, and starts over, reusing the
+ * allocated chunks. Once {@link #seal()} is called the buffer is never spilled
+ * or reset again, and all of its records can be read in order with
+ * {@link #open()}.
+ * </p>
+ */
+final class RecordBuffer {
+    /**
+     * Iterates over records of a sealed buffer, starting with spilled ones
+     */
+    final class Cursor implements Closeable {
+        private FileChannel channel;
+        private int index = -1;
+        private final ByteBuffer input = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        private int spill;
+        private long time;
+        private int value, variable;
+
+        private Cursor() {}
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) channel.close();
+            channel = null;
+            spill = spills.size();
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public int getVariable() {
+            return variable;
+        }
+
+        /**
+         * Advances to the next record
+         *
+         * @return             <code>false</code> if there are no more records
+         * @throws IOException if a spill file couldn't be read
+         */
+        public boolean next() throws IOException {
+            while (spill < spills.size()) {
+                if (channel == null) {
+                    channel = FileChannel.open(spills.get(spill), StandardOpenOption.READ);
+                    input.clear().flip();
+                }
+                if (input.remaining() < RECORD_SIZE) {
+                    input.compact();
+                    while (input.position() < RECORD_SIZE && channel.read(input) >= 0);
+                    input.flip();
+                }
+                if (input.remaining() >= RECORD_SIZE) {
+                    time = input.getLong();
+                    variable = input.getInt();
+                    value = input.getInt();
+                    return true;
+                }
+                channel.close();
+                channel = null;
+                spill++;
+            }
+            if (++index >= sealedSize) return false;
+            time = RecordBuffer.this.getTime(index);
+            variable = RecordBuffer.this.getVariable(index);
+            value = RecordBuffer.this.getValue(index);
+            return true;
+        }
+    }
+
+    private static final State[] STATES = State.values();
+    static final int CHUNK_SHIFT = 13;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    /**
+     * Number of bytes used by a single record
+     */
+    static final int RECORD_SIZE = Long.BYTES + Integer.BYTES * 2;
+    private static final VarHandle SIZE;
+
+    static {
+        try {
+            SIZE = MethodHandles.lookup().findVarHandle(RecordBuffer.class, "size", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private int chunkCount;
+    private long[] currentTimes;
+    private int[] currentValues, currentVariables;
+    private final Path directory;
+    private int position = CHUNK_SIZE;
+    private volatile boolean sealed;
+    private int sealedSize;
+    @SuppressWarnings("unused")
+    private volatile int size;
+    private ByteBuffer spillBuffer;
+    private final BitSet spilledVariables = new BitSet();
+    private final List<Path> spills = new ArrayList<>();
+    private final int spillThreshold;
+    private volatile long[][] times = new long[0][];
+    private volatile int[][] values = new int[0][];
+    private volatile int[][] variables = new int[0][];
+    private int written;
+
+    /**
+     * Constructs a new buffer with preallocated space
+     *
+     * @param capacity       number of records to preallocate space for
+     * @param spillThreshold number of records after which the buffer is spilled
+     *                       to a temporary file, or 0 to keep all records in
+     *                       memory
+     * @param directory      directory for spill files, or <code>null</code> to
+     *                       use the default temporary directory
+     */
+    RecordBuffer(int capacity, int spillThreshold, Path directory) {
+        this.spillThreshold = spillThreshold;
+        this.directory = directory;
+        int preallocated = spillThreshold > 0 ? Math.min(capacity, spillThreshold) : capacity;
+        for (int i = 0; i < preallocated; i += CHUNK_SIZE) addChunk();
+    }
+
+    /**
+     * @param  value a stored value
+     * @return       the decoded state, or <code>null</code> if the value is a
+     *               multi-bit value
+     */
+    static State decode(int value) {
+        return value < MultibitChangeEntry.UNDEFINED ? STATES[MultibitChangeEntry.UNDEFINED - 1 - value] : null;
+    }
+
+    /**
+     * @param  state a binary state
+     * @return       a negative value representing the state
+     */
+    static int encode(State state) {
+        return MultibitChangeEntry.UNDEFINED - 1 - state.ordinal();
+    }
+
+    /**
+     * Converts a stored value of a 1-bit variable to a state.<br>
+     * Multi-bit values of 0, 1 and {@link MultibitChangeEntry#UNDEFINED} are
+     * converted to {@link State#LOW}, {@link State#HIGH} and
+     * {@link State#UNDEFINED} respectively.
+     *
+     * @param  value a stored value
+     * @return       the state
+     */
+    static State toState(int value) {
+        State state = decode(value);
+        if (state != null) return state;
+        return switch (value) {
+            case 0 -> State.LOW;
+            case 1 -> State.HIGH;
+            default -> State.UNDEFINED;
+        };
+    }
+
+    /**
+     * Appends a record. Once the buffer is sealed, records are discarded.
+     *
+     * @throws UncheckedIOException if the buffer had to be spilled, and it failed
+     */
+    void append(long time, int variable, int value) {
+        if (sealed) return;
+        if (position == CHUNK_SIZE) {
+            int chunk = written >>> CHUNK_SHIFT;
+            if (chunk == chunkCount) addChunk();
+            selectChunk(chunk);
+        }
+        currentTimes[position] = time;
+        currentVariables[position] = variable;
+        currentValues[position++] = value;
+        SIZE.setRelease(this, ++written);
+        if (spillThreshold > 0 && written >= spillThreshold) spill();
+    }
+
+    /**
+     * Adds indices of all variables that have records in this buffer to the set.
+     * Only usable after sealing the buffer.
+     *
+     * @param variables the set to fill
+     */
+    synchronized void collectVariables(BitSet variables) {
+        variables.or(spilledVariables);
+        for (int i = 0; i < sealedSize; i++) variables.set(getVariable(i));
+    }
+
+    /**
+     * Deletes all spill files of this buffer
+     *
+     * @return <code>true</code> if the buffer had any spill files
+     */
+    synchronized boolean deleteSpills() {
+        boolean spilled = !spills.isEmpty();
+        for (Path spill : spills) try {
+            Files.deleteIfExists(spill);
+        } catch (IOException e) {}
+        spills.clear();
+        spilledVariables.clear();
+        return spilled;
+    }
+
+    long getTime(int index) {
+        return times[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    int getValue(int index) {
+        return values[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    int getVariable(int index) {
+        return variables[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /**
+     * @return a new cursor over all records of this sealed buffer
+     */
+    synchronized Cursor open() {
+        if (!sealed) throw new IllegalStateException("The buffer is not sealed");
+        return new Cursor();
+    }
+
+    /**
+     * Stops the buffer from being spilled or reset. Records appended after
+     * sealing are discarded.
+     */
+    synchronized void seal() {
+        if (sealed) return;
+        sealed = true;
+        sealedSize = size();
+    }
+
+    int size() {
+        return (int) SIZE.getAcquire(this);
+    }
+
+    private void addChunk() {
+        long[][] times = this.times;
+        int[][] values = this.values, variables = this.variables;
+        if (chunkCount == times.length) {
+            int length = Math.max(4, chunkCount * 2);
+            times = Arrays.copyOf(times, length);
+            values = Arrays.copyOf(values, length);
+            variables = Arrays.copyOf(variables, length);
+        }
+        times[chunkCount] = new long[CHUNK_SIZE];
+        values[chunkCount] = new int[CHUNK_SIZE];
+        variables[chunkCount++] = new int[CHUNK_SIZE];
+        // Chunks below chunkCount are never replaced, so readers may use either copy
+        this.times = times;
+        this.values = values;
+        this.variables = variables;
+    }
+
+    private void selectChunk(int chunk) {
+        currentTimes = times[chunk];
+        currentVariables = variables[chunk];
+        currentValues = values[chunk];
+        position = 0;
+    }
+
+    private synchronized void spill() {
+        if (sealed) return;
+        if (spillBuffer == null) spillBuffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        Path file = null;
+        try {
+            file = directory == null ? Files.createTempFile("vcd4j-", ".spill")
+                    : Files.createTempFile(directory, "vcd4j-", ".spill");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                spillBuffer.clear();
+                for (int i = 0; i < written; i++) {
+                    if (spillBuffer.remaining() < RECORD_SIZE) {
+                        spillBuffer.flip();
+                        while (spillBuffer.hasRemaining()) channel.write(spillBuffer);
+                        spillBuffer.clear();
+                    }
+                    int variable = getVariable(i);
+                    spillBuffer.putLong(getTime(i)).putInt(variable).putInt(getValue(i));
+                    spilledVariables.set(variable);
+                }
+                spillBuffer.flip();
+                while (spillBuffer.hasRemaining()) channel.write(spillBuffer);
+            }
+        } catch (IOException e) {
+            if (file != null) try {
+                Files.deleteIfExists(file);
+            } catch (IOException e2) {}
+            throw new UncheckedIOException("Couldn't spill recorded changes to disk", e);
+        }
+        spills.add(file);
+        written = 0;
+        position = CHUNK_SIZE;
+        SIZE.setRelease(this, 0);
+    }
+}
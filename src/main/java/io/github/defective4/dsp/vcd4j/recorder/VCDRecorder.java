@@ -1,32 +1,83 @@
 package io.github.defective4.dsp.vcd4j.recorder;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import io.github.defective4.dsp.vcd4j.data.BinaryChangeEntry;
 import io.github.defective4.dsp.vcd4j.data.ChangeEntry;
 import io.github.defective4.dsp.vcd4j.data.MultibitChangeEntry;
+import io.github.defective4.dsp.vcd4j.data.Scope;
 import io.github.defective4.dsp.vcd4j.data.State;
 import io.github.defective4.dsp.vcd4j.data.TimeScale;
 import io.github.defective4.dsp.vcd4j.data.TimeScale.TimeScaleUnit;
+import io.github.defective4.dsp.vcd4j.data.ValueChangeColumns;
 import io.github.defective4.dsp.vcd4j.data.VCD;
 import io.github.defective4.dsp.vcd4j.data.VariableDefinition;
+import io.github.defective4.dsp.vcd4j.file.VCDStreamWriter;
 import io.github.defective4.dsp.vcd4j.player.VCDPlayer;
 
 /**
  * Records value changes and stores them in VCD
+ * <p>
+ * By default a recorder is not thread-safe, and all changes have to be inserted
+ * from a single thread. A recorder built with
+ * {@link Builder#setConcurrent(boolean)} accepts changes from any number of
+ * threads. Each producer thread appends to its own buffer, so recording takes
+ * no locks.
+ * </p>
+ * <p>
+ * The cost of producers sharing a recorder is measured by the
+ * <code>VCDRecorderContentionBenchmark</code> benchmark. Results are listed in
+ * the benchmarks' README.
+ * </p>
+ * <p>
+ * Changes are recorded as primitive records in preallocated buffers, and are
+ * only converted to a VCD when the recorder is stopped. For the lowest overhead,
+ * register variables up front with {@link #registerVariable(VariableDefinition)}
+ * and record changes using the returned handles - these calls don't allocate
+ * any objects once the buffers are allocated.
+ * </p>
+ * <p>
+ * For long recording sessions, a memory budget can be set with
+ * {@link Builder#setMemoryBudget(long)}. Recorded changes exceeding the budget
+ * are spilled to temporary files, which are merged back in time order by
+ * {@link #getVCD()} and {@link #export(VCDStreamWriter)}.
+ * {@link #export(VCDStreamWriter)} streams the merged changes directly to a
+ * writer, so the recording is never held in memory as a whole. Spill files are
+ * deleted once they are merged, when the recorder is started again, or when it's
+ * closed.
+ * </p>
  */
-public class VCDRecorder {
+public class VCDRecorder implements Closeable {
+    @FunctionalInterface
+    private interface BlockSink {
+        void accept(long timestamp, int[] handles, int[] values, int size) throws IOException;
+    }
+
     /**
      * The builder class
      */
     public static class Builder {
         private long accuracy = 1;
         private boolean accuracyCeil = false;
+        private boolean concurrent = false;
+        private int initialCapacity = RecordBuffer.CHUNK_SIZE;
+        private long memoryBudget = 0;
+        private File spillDirectory;
         private final TimeScale timeScale;
 
         /**
@@ -41,17 +92,33 @@ public class VCDRecorder {
         }
 
         public VCDRecorder build() {
-            return new VCDRecorder(timeScale, accuracy, accuracyCeil);
+            return new VCDRecorder(this);
         }
 
         public long getAccuracy() {
             return accuracy;
         }
 
+        public int getInitialCapacity() {
+            return initialCapacity;
+        }
+
+        public long getMemoryBudget() {
+            return memoryBudget;
+        }
+
+        public File getSpillDirectory() {
+            return spillDirectory;
+        }
+
         public boolean isAccuracyCeil() {
             return accuracyCeil;
         }
 
+        public boolean isConcurrent() {
+            return concurrent;
+        }
+
         /**
          * Set this recorder's accuracy.<br>
          * For example a value of 500 means that the recorder will round all value
@@ -80,37 +147,236 @@ public class VCDRecorder {
             this.accuracyCeil = accuracyCeil;
             return this;
         }
+
+        /**
+         * If set to true, the recorder will accept value changes from multiple
+         * threads at once.<br>
+         * Each inserting thread appends primitive records to its own staging
+         * buffer, without any locks or shared writes. The only synchronized step
+         * is the first insertion of each variable. The buffers are merged in time
+         * order when the recorder is stopped.<br>
+         * Changes inserted at the same time by different threads end up in the same
+         * time block, in unspecified order.<br>
+         * <b>Default value:</b> false
+         *
+         * @param  concurrent
+         * @return
+         */
+        public Builder setConcurrent(boolean concurrent) {
+            this.concurrent = concurrent;
+            return this;
+        }
+
+        /**
+         * Set the number of changes to preallocate buffer space for when the
+         * recorder is started.<br>
+         * In concurrent mode, the space is preallocated separately for each
+         * inserting thread, when it inserts its first change.<br>
+         * Buffers grow past this capacity as needed, in chunks of
+         * {@value RecordBuffer#CHUNK_SIZE} changes.<br>
+         * <b>Default value:</b> {@value RecordBuffer#CHUNK_SIZE}
+         *
+         * @param  initialCapacity
+         * @return
+         * @throws IllegalArgumentException if initialCapacity is negative
+         */
+        public Builder setInitialCapacity(int initialCapacity) {
+            if (initialCapacity < 0) throw new IllegalArgumentException("initialCapacity < 0");
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of bytes of recorded changes to hold in
+         * memory.<br>
+         * Each change takes {@value RecordBuffer#RECORD_SIZE} bytes, and changes
+         * are buffered in chunks of {@value RecordBuffer#CHUNK_SIZE}, so the budget
+         * is rounded down to whole chunks. Once the budget is filled, buffered
+         * changes are written to a temporary file in the spill directory and the
+         * buffer is reused. The spill happens on the inserting thread.<br>
+         * In concurrent mode, the budget applies to each inserting thread
+         * separately.<br>
+         * A value of 0 disables spilling.<br>
+         * <b>Default value:</b> 0
+         *
+         * @param  memoryBudget
+         * @return
+         * @throws IllegalArgumentException if memoryBudget is negative, or is
+         *                                  smaller than a single chunk of changes
+         *                                  ({@value #MIN_MEMORY_BUDGET} bytes)
+         */
+        public Builder setMemoryBudget(long memoryBudget) {
+            if (memoryBudget < 0) throw new IllegalArgumentException("memoryBudget < 0");
+            if (memoryBudget > 0 && memoryBudget < MIN_MEMORY_BUDGET)
+                throw new IllegalArgumentException("memoryBudget < " + MIN_MEMORY_BUDGET);
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * Set the directory for temporary files created when the memory budget is
+         * exceeded.<br>
+         * Spill files are deleted once the recorded changes are merged by
+         * {@link VCDRecorder#getVCD()} or {@link VCDRecorder#export(VCDStreamWriter)},
+         * when the recorder is started again, or when it's closed.<br>
+         * <b>Default value:</b> <code>null</code> (the system's default temporary
+         * directory)
+         *
+         * @param  spillDirectory
+         * @return
+         */
+        public Builder setSpillDirectory(File spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
     }
 
+    /**
+     * The smallest memory budget, fitting a single chunk of changes
+     */
+    public static final int MIN_MEMORY_BUDGET = RecordBuffer.CHUNK_SIZE * RecordBuffer.RECORD_SIZE;
+
     private final long accuracy;
     private final boolean accuracyCeil;
-
-    private final Map<Long, List<ChangeEntry<?>>> changes = new LinkedHashMap<>();
-    private long startTimeNanos = -1;
+    private RecordBuffer buffer;
+    private final Queue<RecordBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private boolean closed;
+    private ValueChangeColumns columns;
+    private final boolean concurrent;
+    private volatile VariableDefinition[] definitions = new VariableDefinition[0];
+    private final double divider;
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private final int initialCapacity;
+    private volatile ThreadLocal<RecordBuffer> localBuffer;
+    private RecordBuffer[] recorded;
+    private VariableDefinition[] recordedDefinitions;
+    private BitSet recordedVariables;
+    private final BitSet registered = new BitSet();
+    private final Path spillDirectory;
+    private boolean spillsDeleted;
+    private final int spillThreshold;
+    private volatile long startTimeNanos = -1;
+    private long stopTime;
     private final TimeScale timeScale;
-    private final Map<String, VariableDefinition> variables = new HashMap<>();
 
-    private VCDRecorder(TimeScale timeScale, long accuracy, boolean accuracyCeil) {
-        this.timeScale = timeScale;
-        this.accuracy = accuracy;
-        this.accuracyCeil = accuracyCeil;
+    private VCDRecorder(Builder builder) {
+        timeScale = builder.timeScale;
+        accuracy = builder.accuracy;
+        accuracyCeil = builder.accuracyCeil;
+        concurrent = builder.concurrent;
+        initialCapacity = builder.initialCapacity;
+        spillThreshold = (int) Math.min(builder.memoryBudget / RecordBuffer.RECORD_SIZE, Integer.MAX_VALUE)
+                & -RecordBuffer.CHUNK_SIZE;
+        spillDirectory = builder.spillDirectory == null ? null : builder.spillDirectory.toPath();
+        divider = timeScale.getUnit().getNth() / TimeScaleUnit.NANOSECOND.getNth();
+    }
+
+    /**
+     * Stops the recorder and deletes its spill files.<br>
+     * The recording is discarded, and the recorder can't be started again.
+     * VCDs previously returned by {@link #getVCD()} stay valid.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        stop();
+        if (recorded != null) for (RecordBuffer buffer : recorded) buffer.deleteSpills();
+        recorded = null;
+        recordedDefinitions = null;
+        recordedVariables = null;
+        columns = null;
+        closed = true;
+    }
+
+    /**
+     * Writes the recorded changes to a stream writer.<br>
+     * Only usable after starting, then stopping the recorder.<br>
+     * Changes are merged from memory and spill files as they are written, so this
+     * method's memory usage doesn't depend on the length of the recording. The
+     * writer is not closed.<br>
+     * Spill files are deleted once they are merged, so if the recording was
+     * spilled, it can only be exported once, unless {@link #getVCD()} was called
+     * before.
+     *
+     * @param  writer                a writer with no header written yet
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the recorder was not stopped before using
+     *                               this method, or spilled changes were already
+     *                               exported
+     */
+    public synchronized void export(VCDStreamWriter writer) throws IOException {
+        Objects.requireNonNull(writer);
+        if (startTimeNanos != -1) throw new IllegalStateException("Stop the recorder before exporting");
+        if (recorded == null) {
+            writer.writeHeader(timeScale, List.of());
+            return;
+        }
+        if (columns != null) {
+            exportColumns(writer);
+            return;
+        }
+        if (spillsDeleted) throw new IllegalStateException("Spilled changes were already exported");
+        List<VariableDefinition> variables = new ArrayList<>();
+        for (int i = recordedVariables.nextSetBit(0); i >= 0; i = recordedVariables.nextSetBit(i + 1))
+            variables.add(recordedDefinitions[i]);
+        writer.writeHeader(timeScale, variables);
+        merge((timestamp, handles, values, size) -> {
+            List<ChangeEntry<?>> changes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                VariableDefinition variable = recordedDefinitions[handles[i]];
+                changes.add(variable.getBitCount() == 1
+                        ? BinaryChangeEntry.of(variable, RecordBuffer.toState(values[i]))
+                        : MultibitChangeEntry.of(variable, values[i]));
+            }
+            writer.append(timestamp, changes);
+        });
+        deleteSpills();
     }
 
     /**
      * Get recorderd VCD.<br>
-     * Only usable after starting, then stopping the recorder.
+     * Only usable after starting, then stopping the recorder.<br>
+     * Spill files are deleted once the recorded changes are merged.
      *
      * @return                       new VCD
      * @throws IllegalStateException if the recorder was not stopped before using
-     *                               this method
+     *                               this method, or spilled changes were already
+     *                               exported
+     * @throws UncheckedIOException  if spilled changes couldn't be read
      */
-    public VCD getVCD() {
+    public synchronized VCD getVCD() {
         if (startTimeNanos != -1) throw new IllegalStateException("Stop the recorder before getting the VCD");
-        Map<Long, List<ChangeEntry<?>>> changes = new LinkedHashMap<>();
-        Map<String, VariableDefinition> variables = new HashMap<>();
-        changes.putAll(this.changes);
-        variables.putAll(this.variables);
-        return new VCD(timeScale, changes, variables);
+        if (recorded == null) return new VCD(timeScale, new LinkedHashMap<>(), new HashMap<>());
+        if (columns == null) {
+            if (spillsDeleted) throw new IllegalStateException("Spilled changes were already exported");
+            try {
+                columns = buildColumns();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            deleteSpills();
+        }
+        return new VCD(null, null, null, Scope.DEFAULT, timeScale, columns);
+    }
+
+    /**
+     * Insert a new 1-bit change of a registered variable at current time relative
+     * to recorder's startup time.<br>
+     * This method doesn't allocate any objects, unless a buffer has to grow.
+     *
+     * @param  handle                   handle returned by
+     *                                  {@link #registerVariable(VariableDefinition)}
+     * @param  state                    state of the variable at time of insertion
+     * @throws IllegalStateException    if the recorder is not started
+     * @throws IllegalArgumentException if the handle is invalid, or the
+     *                                  variable's bit count is not equal to 1
+     */
+    public void insertBinaryChange(int handle, State state) {
+        if (startTimeNanos == -1) throw new IllegalStateException("Recorder is not started");
+        Objects.requireNonNull(state);
+        if (checkHandle(handle).getBitCount() != 1)
+            throw new IllegalArgumentException("The variable definition's bitCount must be equal to 1");
+        record(handle, RecordBuffer.encode(state));
     }
 
     /**
@@ -129,13 +395,25 @@ public class VCDRecorder {
         if (startTimeNanos == -1) throw new IllegalStateException("Recorder is not started");
         if (variable.getBitCount() != 1)
             throw new IllegalArgumentException("The variable definition's bitCount must be equal to 1");
-        VariableDefinition currentDef = variables.get(variable.getIdentifier());
-        if (currentDef == null) variables.put(variable.getIdentifier(), variable);
-        else if (currentDef.getBitCount() != 1) throw new IllegalArgumentException(String
-                .format("Variable \"%s\" with key \"%s\" is already defined with a different bit count",
-                        variable.getName(), variable.getIdentifier()));
-        long timePassed = calculateTimePassed();
-        putEntry(new BinaryChangeEntry(variable, state), timePassed);
+        Objects.requireNonNull(state);
+        record(register(variable), RecordBuffer.encode(state));
+    }
+
+    /**
+     * Insert a new multi-bit change of a registered variable at current time
+     * relative to recorder's startup time.<br>
+     * This method doesn't allocate any objects, unless a buffer has to grow.
+     *
+     * @param  handle                   handle returned by
+     *                                  {@link #registerVariable(VariableDefinition)}
+     * @param  value                    value of the variable at time of insertion
+     * @throws IllegalStateException    if the recorder is not started
+     * @throws IllegalArgumentException if the handle or the value is invalid
+     */
+    public void insertMultibitChange(int handle, int value) {
+        if (startTimeNanos == -1) throw new IllegalStateException("Recorder is not started");
+        checkValue(checkHandle(handle), value);
+        record(handle, value);
     }
 
     /**
@@ -146,59 +424,117 @@ public class VCDRecorder {
      * @param  value                    value of the variable at time of insertion
      * @throws IllegalStateException    if the recorder is not started
      * @throws IllegalArgumentException if the variable is already defined in the
-     *                                  recorder with a different bit count
+     *                                  recorder with a different bit count, or
+     *                                  the value is invalid
      */
     public void insertMultibitChange(VariableDefinition variable, int value) {
         if (startTimeNanos == -1) throw new IllegalStateException("Recorder is not started");
-        VariableDefinition currentDef = variables.get(variable.getIdentifier());
-        if (currentDef == null) variables.put(variable.getIdentifier(), variable);
-        else if (currentDef.getBitCount() != variable.getBitCount()) throw new IllegalArgumentException(String
-                .format("Variable \"%s\" with key \"%s\" is already defined with a different bit count",
-                        variable.getName(), variable.getIdentifier()));
-        long timePassed = calculateTimePassed();
-        putEntry(new MultibitChangeEntry(variable, value), timePassed);
+        checkValue(variable, value);
+        record(register(variable), value);
+    }
+
+    /**
+     * @return <code>true</code> if this recorder accepts changes from multiple
+     *         threads
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Registers a variable and returns its handle.<br>
+     * Registered variables stay registered for the recorder's lifetime, and are
+     * included in every recording, even if they never change.<br>
+     * Registering a variable again returns the same handle.
+     *
+     * @param  variable                 a non-null variable definition
+     * @return                          handle of the variable, to be used with
+     *                                  {@link #insertBinaryChange(int, State)} and
+     *                                  {@link #insertMultibitChange(int, int)}
+     * @throws IllegalArgumentException if the variable is already defined in the
+     *                                  recorder with a different bit count
+     */
+    public int registerVariable(VariableDefinition variable) {
+        Objects.requireNonNull(variable);
+        int handle = register(variable);
+        synchronized (handles) {
+            registered.set(handle);
+        }
+        return handle;
     }
 
     /**
      * Starts the recorder
+     *
+     * @throws IllegalStateException if the recorder was closed
      */
-    public void start() {
+    public synchronized void start() {
+        if (closed) throw new IllegalStateException("Recorder is closed");
         if (startTimeNanos != -1) return;
-        variables.clear();
-        changes.clear();
+        columns = null;
+        spillsDeleted = false;
+        if (recorded != null) for (RecordBuffer buffer : recorded) buffer.deleteSpills();
+        recorded = null;
+        recordedDefinitions = null;
+        recordedVariables = null;
+        buffers.clear();
+        forgetUnregistered();
+        if (concurrent) {
+            localBuffer = ThreadLocal.withInitial(() -> {
+                RecordBuffer buffer = new RecordBuffer(initialCapacity, spillThreshold, spillDirectory);
+                buffers.add(buffer);
+                return buffer;
+            });
+        } else {
+            buffer = new RecordBuffer(initialCapacity, spillThreshold, spillDirectory);
+            buffers.add(buffer);
+        }
         startTimeNanos = System.nanoTime();
     }
 
     /**
-     * Stops the recorder
+     * Stops the recorder.<br>
+     * In concurrent mode, changes inserted while the recorder is being stopped
+     * may be left out of the recording.
      */
-    public void stop() {
+    public synchronized void stop() {
         if (startTimeNanos == -1) return;
-        long time = calculateTimePassed();
+        long time = calculateTimePassed(startTimeNanos);
         startTimeNanos = -1;
-        List<Map.Entry<Long, List<ChangeEntry<?>>>> entries = new ArrayList<>(changes.entrySet());
-        Map<Long, List<ChangeEntry<?>>> changes = new LinkedHashMap<>();
-        List<ChangeEntry<?>> defaultEntries = new ArrayList<>();
-        for (VariableDefinition def : variables.values()) defaultEntries
-                .add(def.getBitCount() == 1 ? new BinaryChangeEntry(def, State.UNDEFINED)
-                        : new MultibitChangeEntry(def, MultibitChangeEntry.UNDEFINED));
-        if (entries.isEmpty()) {
-            changes.put(time, defaultEntries);
-        } else {
-            changes.put(entries.get(0).getKey(), defaultEntries);
-            for (int i = 0; i < entries.size() - 1; i++) {
-                changes.put(entries.get(i + 1).getKey(), entries.get(i).getValue());
-            }
-            if (!changes.containsKey(time)) changes.put(time, entries.get(entries.size() - 1).getValue());
+        recorded = buffers.toArray(new RecordBuffer[0]);
+        buffers.clear();
+        buffer = null;
+        stopTime = time;
+        recordedDefinitions = definitions;
+        synchronized (handles) {
+            recordedVariables = (BitSet) registered.clone();
+        }
+        for (RecordBuffer buffer : recorded) {
+            buffer.seal();
+            buffer.collectVariables(recordedVariables);
         }
-        this.changes.clear();
-        this.changes.putAll(changes);
     }
 
-    private long calculateTimePassed() {
+    private ValueChangeColumns buildColumns() throws IOException {
+        ValueChangeColumns.Builder builder = new ValueChangeColumns.Builder();
+        int[] columns = new int[recordedDefinitions.length];
+        for (int i = recordedVariables.nextSetBit(0); i >= 0; i = recordedVariables.nextSetBit(i + 1))
+            columns[i] = builder.addVariable(recordedDefinitions[i]);
+        merge((timestamp, handles, values, size) -> {
+            builder.addTimestamp(timestamp);
+            for (int i = 0; i < size; i++) {
+                int column = columns[handles[i]];
+                if (builder.isBinary(column))
+                    builder.addBinaryChange(column, timestamp, RecordBuffer.toState(values[i]));
+                else builder.addMultibitChange(column, timestamp, values[i]);
+            }
+        });
+        return builder.build();
+    }
+
+    private long calculateTimePassed(long startTimeNanos) {
         long timeNanos = System.nanoTime() - startTimeNanos;
-        double div = timeScale.getUnit().getNth() / TimeScaleUnit.NANOSECOND.getNth();
-        long timeConverted = (long) (timeNanos / div);
+        long timeConverted = (long) (timeNanos / divider);
         timeConverted /= timeScale.getResolution();
         if (accuracy != 1) {
             double divResult = timeConverted / (double) accuracy;
@@ -207,8 +543,127 @@ public class VCDRecorder {
         return timeConverted;
     }
 
-    private void putEntry(ChangeEntry<?> entry, long timePassed) {
-        if (!changes.containsKey(timePassed)) changes.put(timePassed, new ArrayList<>());
-        changes.get(timePassed).add(entry);
+    private VariableDefinition checkHandle(int handle) {
+        VariableDefinition[] definitions = this.definitions;
+        if (handle < 0 || handle >= definitions.length || definitions[handle] == null)
+            throw new IllegalArgumentException("Invalid variable handle " + handle);
+        return definitions[handle];
+    }
+
+    /**
+     * Deletes spill files of recorded buffers once their changes were merged
+     */
+    private void deleteSpills() {
+        for (RecordBuffer buffer : recorded) if (buffer.deleteSpills()) spillsDeleted = true;
+    }
+
+    private void exportColumns(VCDStreamWriter writer) throws IOException {
+        writer.writeHeader(timeScale, columns.getVariables());
+        ValueChangeColumns.Cursor cursor = columns.cursor();
+        for (int i = 0; i < columns.getTimestampCount(); i++) {
+            long timestamp = columns.getUniqueTimestamp(i);
+            List<ChangeEntry<?>> changes = new ArrayList<>();
+            while (cursor.hasNext() && cursor.peekTimestamp() == timestamp) {
+                cursor.next();
+                changes.add(columns.toChangeEntry(cursor.getVariableIndex(), cursor.getChangeIndex()));
+            }
+            writer.append(timestamp, changes);
+        }
+    }
+
+    private void forgetUnregistered() {
+        synchronized (handles) {
+            VariableDefinition[] definitions = Arrays.copyOf(this.definitions, registered.length());
+            for (int i = 0; i < definitions.length; i++) if (!registered.get(i)) definitions[i] = null;
+            handles.values().removeIf(handle -> !registered.get(handle));
+            this.definitions = definitions;
+        }
+    }
+
+    /**
+     * Merges all recorded changes in time order, and passes them to the sink in
+     * blocks, shifted so that each block is stored under the timestamp that
+     * follows it.<br>
+     * The first block contains undefined values of all recorded variables.
+     */
+    private void merge(BlockSink sink) throws IOException {
+        RecordBuffer.Cursor[] cursors = new RecordBuffer.Cursor[recorded.length];
+        boolean[] available = new boolean[recorded.length];
+        try {
+            for (int i = 0; i < recorded.length; i++) {
+                cursors[i] = recorded[i].open();
+                available[i] = cursors[i].next();
+            }
+            int[] blockHandles = new int[Math.max(64, recordedVariables.cardinality())];
+            int[] blockValues = new int[blockHandles.length];
+            int blockSize = 0;
+            for (int i = recordedVariables.nextSetBit(0); i >= 0; i = recordedVariables.nextSetBit(i + 1)) {
+                blockHandles[blockSize] = i;
+                blockValues[blockSize++] = MultibitChangeEntry.UNDEFINED;
+            }
+            long blockTime = -1;
+            while (true) {
+                int source = -1;
+                long time = 0;
+                for (int i = 0; i < cursors.length; i++) {
+                    if (!available[i]) continue;
+                    long candidate = cursors[i].getTime();
+                    if (source == -1 || candidate < time) {
+                        source = i;
+                        time = candidate;
+                    }
+                }
+                // Changes timed after the stop were inserted while the recorder was being stopped
+                if (source == -1 || time > stopTime) break;
+                if (time != blockTime) {
+                    sink.accept(time, blockHandles, blockValues, blockSize);
+                    blockSize = 0;
+                    blockTime = time;
+                }
+                if (blockSize == blockHandles.length) {
+                    blockHandles = Arrays.copyOf(blockHandles, blockSize * 2);
+                    blockValues = Arrays.copyOf(blockValues, blockSize * 2);
+                }
+                RecordBuffer.Cursor cursor = cursors[source];
+                blockHandles[blockSize] = cursor.getVariable();
+                blockValues[blockSize++] = cursor.getValue();
+                available[source] = cursor.next();
+            }
+            if (blockTime != stopTime) sink.accept(stopTime, blockHandles, blockValues, blockSize);
+        } finally {
+            for (RecordBuffer.Cursor cursor : cursors) if (cursor != null) cursor.close();
+        }
+    }
+
+    private void record(int handle, int value) {
+        long start = startTimeNanos;
+        // The recorder was stopped by another thread after the caller checked it
+        if (start == -1) return;
+        (concurrent ? localBuffer.get() : buffer).append(calculateTimePassed(start), handle, value);
+    }
+
+    private int register(VariableDefinition variable) {
+        Integer handle = handles.get(variable.getIdentifier());
+        if (handle == null) synchronized (handles) {
+            handle = handles.get(variable.getIdentifier());
+            if (handle == null) {
+                VariableDefinition[] definitions = Arrays.copyOf(this.definitions, this.definitions.length + 1);
+                definitions[definitions.length - 1] = variable;
+                this.definitions = definitions;
+                handles.put(variable.getIdentifier(), definitions.length - 1);
+                return definitions.length - 1;
+            }
+        }
+        if (definitions[handle].getBitCount() != variable.getBitCount()) throw new IllegalArgumentException(String
+                .format("Variable \"%s\" with key \"%s\" is already defined with a different bit count",
+                        variable.getName(), variable.getIdentifier()));
+        return handle;
+    }
+
+    private static void checkValue(VariableDefinition variable, int value) {
+        if (value < -1) throw new IllegalArgumentException("value < -1");
+        if (value != MultibitChangeEntry.UNDEFINED
+                && Integer.SIZE - Integer.numberOfLeadingZeros(value) > variable.getBitCount())
+            throw new IllegalArgumentException("value must take less or equal bits to the defined variable's bitCount");
     }
 }